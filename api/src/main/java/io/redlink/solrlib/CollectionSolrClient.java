@@ -0,0 +1,72 @@
+/*
+ * Copyright 2017 redlink GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.redlink.solrlib;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.beans.DocumentObjectBinder;
+import org.apache.solr.common.util.NamedList;
+
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * A lightweight view on a shared {@link SolrClient}, bound to a default collection.
+ * All requests are delegated to the shared client, requests without an explicit collection
+ * are sent to the bound collection.
+ * <p>
+ * {@link #close()} is a no-op, the shared client is owned (and closed) by the {@link SolrCoreContainer}.
+ */
+public class CollectionSolrClient extends SolrClient {
+
+    private final SolrClient delegate;
+    private final String collection;
+
+    public CollectionSolrClient(SolrClient delegate, String collection) {
+        this.delegate = Objects.requireNonNull(delegate);
+        this.collection = Objects.requireNonNull(collection);
+    }
+
+    @Override
+    public NamedList<Object> request(SolrRequest request, String collection) throws SolrServerException, IOException {
+        return delegate.request(request, collection == null ? this.collection : collection);
+    }
+
+    @Override
+    public DocumentObjectBinder getBinder() {
+        return delegate.getBinder();
+    }
+
+    /**
+     * @return the collection this client is bound to
+     */
+    public String getCollection() {
+        return collection;
+    }
+
+    /**
+     * @return the shared client all requests are delegated to
+     */
+    public SolrClient getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public void close() throws IOException {
+        // nop - the delegate is shared
+    }
+}
@@ -0,0 +1,370 @@
+/*
+ * Copyright 2017 redlink GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.redlink.solrlib;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Manifest of the files deployed from a core-bundle into a core-directory, stored as {@value #MANIFEST_FILE}
+ * in the core-directory. For each file the content-hash, size and last-modified time of the source as well as the size
+ * and last-modified time of the deployed copy are recorded, this allows an incremental {@link #sync(Path, Path)} of
+ * a core-bundle into an existing core-directory.
+ * <p>
+ * Only files of the bundle are tracked, anything else in the core-directory (e.g. the {@code data}-directory)
+ * is never touched.
+ */
+public final class CoreBundleManifest {
+
+    public static final String MANIFEST_FILE = ".solrlib-manifest";
+
+    private static final Logger LOG = LoggerFactory.getLogger(CoreBundleManifest.class);
+    private static final String DATA_DIR = "data";
+    /** rewritten by the core-container and Solr, so it is not reset to the bundle while the source is unchanged */
+    private static final String CORE_PROPERTIES = "core.properties";
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final SortedMap<String, Entry> entries;
+
+    private CoreBundleManifest(SortedMap<String, Entry> entries) {
+        this.entries = entries;
+    }
+
+    /**
+     * @return the relative paths (separated by {@code /}) of all files in the manifest
+     */
+    public Set<String> getFiles() {
+        return Collections.unmodifiableSet(entries.keySet());
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * @return a content-hash over all files in the manifest: two manifests with the same fingerprint
+     *      describe identical bundles.
+     */
+    public String getFingerprint() {
+        final MessageDigest digest = createDigest();
+        entries.forEach((file, entry) -> {
+            digest.update(file.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(entry.hash.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+        });
+        return toHex(digest.digest());
+    }
+
+    /**
+     * @param other another manifest of the same core-directory
+     * @return {@code true} if both manifests describe the same bundle deployed as the same files,
+     *      i.e. no file was copied, reset or removed by a {@link #sync(Path, Path)} in between
+     */
+    public boolean isSameDeployment(CoreBundleManifest other) {
+        if (!entries.keySet().equals(other.entries.keySet())) {
+            return false;
+        }
+        return entries.entrySet().stream().allMatch(e -> {
+            final Entry entry = e.getValue();
+            final Entry otherEntry = other.entries.get(e.getKey());
+            return entry.hash.equals(otherEntry.hash)
+                    && (CORE_PROPERTIES.equals(e.getKey())
+                        || entry.targetSize == otherEntry.targetSize && entry.targetLastModified == otherEntry.targetLastModified);
+        });
+    }
+
+    /**
+     * Compute the fingerprint of the provided directory, without writing or reading a manifest.
+     * @param dir the directory, e.g. the {@code conf}-directory of a core
+     * @return a content-hash over all files in the directory (a non-existing directory is treated as empty)
+     * @see #getFingerprint()
+     */
+    public static String computeFingerprint(Path dir) throws IOException {
+        final List<Path> files = new ArrayList<>();
+        if (Files.isDirectory(dir)) {
+            try (Stream<Path> stream = Files.walk(dir)) {
+                stream.filter(Files::isRegularFile).forEach(files::add);
+            }
+        }
+        final SortedMap<String, Entry> entries = new TreeMap<>();
+        for (Path file : files) {
+            entries.put(toRelativeName(dir, file), new Entry(hash(file), Files.size(file), 0, -1, -1));
+        }
+        return new CoreBundleManifest(entries).getFingerprint();
+    }
+
+    /**
+     * Read the manifest of the provided core-directory.
+     * @param coreDir the core-directory
+     * @return the manifest, which is empty if the core-directory does not contain a manifest
+     */
+    public static CoreBundleManifest read(Path coreDir) throws IOException {
+        final SortedMap<String, Entry> entries = new TreeMap<>();
+        final Path manifestFile = coreDir.resolve(MANIFEST_FILE);
+        if (Files.isRegularFile(manifestFile)) {
+            final Properties properties = new Properties();
+            try (InputStream in = Files.newInputStream(manifestFile)) {
+                properties.load(in);
+            }
+            for (String file : properties.stringPropertyNames()) {
+                final Entry entry = Entry.parse(properties.getProperty(file));
+                if (entry != null) {
+                    entries.put(file, entry);
+                } else {
+                    LOG.debug("Ignoring invalid manifest-entry for {} in {}", file, manifestFile);
+                }
+            }
+        }
+        return new CoreBundleManifest(entries);
+    }
+
+    /**
+     * Write the manifest to the provided core-directory.
+     * @see #delete(Path)
+     */
+    public void write(Path coreDir) throws IOException {
+        final Properties properties = new Properties();
+        entries.forEach((file, entry) -> properties.setProperty(file, entry.toString()));
+        try (OutputStream out = Files.newOutputStream(coreDir.resolve(MANIFEST_FILE))) {
+            properties.store(out, "Generated by SolrLib, do not edit");
+        }
+    }
+
+    /**
+     * Delete the manifest of the provided core-directory, the next {@link #sync(Path, Path)} copies all files again.
+     * @return {@code true} if a manifest was deleted
+     */
+    public static boolean delete(Path coreDir) throws IOException {
+        return Files.deleteIfExists(coreDir.resolve(MANIFEST_FILE));
+    }
+
+    /**
+     * Incrementally synchronize the content of {@code sourceDir} into {@code targetDir}: files that did not change
+     * since the last sync are skipped, changed files are copied and files that are no longer part of the source
+     * are removed. Files that were modified in the target-directory (e.g. a {@code managed-schema} changed via the
+     * Schema API) are reset to the source, except for the {@code core.properties}.
+     * <p>
+     * The {@code data}-directory of the bundle is excluded, as the index of a core must never be reset to the
+     * bundle: it is installed into new cores as
+     * {@link SolrCoreDescriptor#visitIndexTemplate(SolrCoreDescriptor.IndexTemplateVisitor) index-template} instead.
+     * @param sourceDir the (unpacked) core-bundle, might be on a different {@link java.nio.file.FileSystem}
+     * @param targetDir the core-directory
+     * @return {@code true} if the content of the target-directory changed
+     */
+    public static boolean sync(Path sourceDir, Path targetDir) throws IOException {
+        final CoreBundleManifest previous = read(targetDir);
+        final SortedMap<String, Entry> current = new TreeMap<>();
+        int copied = 0, skipped = 0, removed = 0;
+
+        Files.createDirectories(targetDir);
+        final List<Path> sourceFiles = new ArrayList<>();
+        try (Stream<Path> stream = Files.walk(sourceDir)) {
+            stream.filter(Files::isRegularFile).forEach(sourceFiles::add);
+        }
+        for (Path sourceFile : sourceFiles) {
+            final String file = toRelativeName(sourceDir, sourceFile);
+            if (isExcluded(file)) {
+                continue;
+            }
+            final Path targetFile = targetDir.resolve(file);
+            final long size = Files.size(sourceFile);
+            final long lastModified = Files.getLastModifiedTime(sourceFile).toMillis();
+            final Entry known = previous.entries.get(file);
+
+            if (known != null && known.size == size && known.lastModified == lastModified && isDeployed(file, known, targetFile)) {
+                current.put(file, known);
+                skipped++;
+                continue;
+            }
+            final String hash = known == null ? null : hash(sourceFile);
+            if (known != null && known.hash.equals(hash) && isDeployed(file, known, targetFile)) {
+                // e.g. only the timestamp changed
+                current.put(file, new Entry(hash, size, lastModified, known.targetSize, known.targetLastModified));
+                skipped++;
+                continue;
+            }
+            if (known != null && known.hash.equals(hash) && Files.isRegularFile(targetFile) && hash.equals(hash(targetFile))) {
+                // e.g. the target was touched, but not modified
+                current.put(file, new Entry(hash, size, lastModified, Files.size(targetFile),
+                        Files.getLastModifiedTime(targetFile).toMillis()));
+                skipped++;
+                continue;
+            }
+            if (targetFile.getParent() != null) {
+                Files.createDirectories(targetFile.getParent());
+            }
+            Files.copy(sourceFile, targetFile, StandardCopyOption.REPLACE_EXISTING);
+            current.put(file, new Entry(hash != null ? hash : hash(sourceFile), size, lastModified, Files.size(targetFile),
+                    Files.getLastModifiedTime(targetFile).toMillis()));
+            copied++;
+        }
+
+        for (String file : previous.entries.keySet()) {
+            if (!current.containsKey(file)) {
+                final Path targetFile = targetDir.resolve(file).normalize();
+                if (!targetFile.startsWith(targetDir.normalize())) {
+                    LOG.warn("Ignoring manifest-entry {} outside of {}", file, targetDir);
+                    continue;
+                }
+                if (Files.deleteIfExists(targetFile)) {
+                    removed++;
+                }
+                deleteEmptyParents(targetDir, targetFile.getParent());
+            }
+        }
+
+        final CoreBundleManifest manifest = new CoreBundleManifest(current);
+        manifest.write(targetDir);
+        LOG.debug("Synced {} to {}: {} copied, {} unchanged, {} removed", sourceDir, targetDir, copied, skipped, removed);
+        return copied > 0 || removed > 0;
+    }
+
+    /**
+     * @return {@code true} if the target-file is still the one written by the last sync (same size and last-modified time)
+     */
+    private static boolean isDeployed(String file, Entry entry, Path targetFile) throws IOException {
+        if (CORE_PROPERTIES.equals(file)) {
+            return Files.exists(targetFile);
+        }
+        return Files.isRegularFile(targetFile)
+                && entry.targetSize == Files.size(targetFile)
+                && entry.targetLastModified == Files.getLastModifiedTime(targetFile).toMillis();
+    }
+
+    private static boolean isExcluded(String file) {
+        return MANIFEST_FILE.equals(file)
+                || DATA_DIR.equals(file)
+                || file.startsWith(DATA_DIR + "/");
+    }
+
+    private static String toRelativeName(Path baseDir, Path file) {
+        // the source might be a zip-filesystem, so don't rely on the platform-specific separator
+        final Path relative = baseDir.relativize(file);
+        final List<String> names = new ArrayList<>(relative.getNameCount());
+        for (Path name : relative) {
+            names.add(StringUtils.removeEnd(name.toString(), "/"));
+        }
+        return String.join("/", names);
+    }
+
+    private static void deleteEmptyParents(Path baseDir, Path dir) throws IOException {
+        Path current = dir;
+        while (current != null && !current.equals(baseDir) && current.startsWith(baseDir) && Files.isDirectory(current)) {
+            try (DirectoryStream<Path> children = Files.newDirectoryStream(current)) {
+                if (children.iterator().hasNext()) {
+                    return;
+                }
+            }
+            Files.delete(current);
+            current = current.getParent();
+        }
+    }
+
+    private static String hash(Path file) throws IOException {
+        final MessageDigest digest = createDigest();
+        final byte[] buffer = new byte[8192];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not supported by the JVM", e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        final char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[2 * i] = HEX[(bytes[i] >> 4) & 0x0f];
+            chars[2 * i + 1] = HEX[bytes[i] & 0x0f];
+        }
+        return new String(chars);
+    }
+
+    @Override
+    public String toString() {
+        return "CoreBundleManifest{" +
+                "files=" + entries.size() +
+                '}';
+    }
+
+    /**
+     * Manifest-entry of a single file: hash, size and last-modified time of the source,
+     * size and last-modified time of the target ({@code -1} if unknown).
+     */
+    private static final class Entry {
+        private final String hash;
+        private final long size;
+        private final long lastModified;
+        private final long targetSize;
+        private final long targetLastModified;
+
+        private Entry(String hash, long size, long lastModified, long targetSize, long targetLastModified) {
+            this.hash = hash;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.targetSize = targetSize;
+            this.targetLastModified = targetLastModified;
+        }
+
+        private static Entry parse(String value) {
+            final String[] parts = StringUtils.split(value, ',');
+            if (parts == null || parts.length != 5) {
+                return null;
+            }
+            try {
+                return new Entry(parts[0], Long.parseLong(parts[1]), Long.parseLong(parts[2]),
+                        Long.parseLong(parts[3]), Long.parseLong(parts[4]));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return hash + "," + size + "," + lastModified + "," + targetSize + "," + targetLastModified;
+        }
+    }
+}
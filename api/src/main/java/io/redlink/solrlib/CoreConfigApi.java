@@ -0,0 +1,110 @@
+/*
+ * Copyright 2017 redlink GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.redlink.solrlib;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.request.GenericSolrRequest;
+import org.apache.solr.client.solrj.request.RequestWriter;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.Utils;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Access to the <a href="https://lucene.apache.org/solr/guide/7_5/config-api.html">Config API</a> of a core.
+ * Works with every backend: embedded, standalone and cloud (where the overlay is shared by the collection).
+ */
+final class CoreConfigApi {
+
+    private static final String CONFIG_PATH = "/config";
+
+    private CoreConfigApi() {
+        throw new IllegalStateException("No instances allowed");
+    }
+
+    /**
+     * Read the provided properties from the config-overlay of the core.
+     * @param solrClient the client of the core
+     * @param properties the (dot-separated) names of the properties, e.g. {@code updateHandler.autoCommit.maxTime}
+     * @return the properties set in the overlay, properties that are not part of the overlay are missing
+     */
+    static Map<String, Object> getOverlayProperties(SolrClient solrClient, Collection<String> properties)
+            throws IOException, SolrServerException {
+        final NamedList<Object> response = solrClient.request(
+                new GenericSolrRequest(SolrRequest.METHOD.GET, CONFIG_PATH + "/overlay", new ModifiableSolrParams()));
+        final Object props = get(response.get("overlay"), "props");
+        final Map<String, Object> result = new LinkedHashMap<>();
+        for (String property : properties) {
+            Object value = props;
+            for (String name : StringUtils.split(property, '.')) {
+                value = get(value, name);
+            }
+            if (value != null) {
+                result.put(property, value);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Update the config-overlay of the core in a single request, the core is reloaded by Solr.
+     * @param solrClient the client of the core
+     * @param set the properties to set
+     * @param unset the properties to remove from the overlay
+     */
+    static void updateOverlayProperties(SolrClient solrClient, Map<String, Object> set, Collection<String> unset)
+            throws IOException, SolrServerException {
+        if (set.isEmpty() && unset.isEmpty()) {
+            return;
+        }
+        // the Config API allows to repeat a command, so the payload is not a plain json-object
+        final StringBuilder commands = new StringBuilder("{");
+        if (!set.isEmpty()) {
+            commands.append("\"set-property\":").append(Utils.toJSONString(set));
+        }
+        for (String property : unset) {
+            if (commands.length() > 1) {
+                commands.append(',');
+            }
+            commands.append("\"unset-property\":").append(Utils.toJSONString(property));
+        }
+        commands.append('}');
+
+        final GenericSolrRequest request = new GenericSolrRequest(SolrRequest.METHOD.POST, CONFIG_PATH, new ModifiableSolrParams());
+        request.setContentWriter(new RequestWriter.StringPayloadContentWriter(commands.toString(), "application/json"));
+        solrClient.request(request);
+    }
+
+    /**
+     * Navigate the response, which might consist of {@link Map}s or {@link NamedList}s depending on the backend.
+     */
+    private static Object get(Object container, String name) {
+        if (container instanceof Map) {
+            return ((Map<?, ?>) container).get(name);
+        } else if (container instanceof NamedList) {
+            return ((NamedList<?>) container).get(name);
+        } else {
+            return null;
+        }
+    }
+}
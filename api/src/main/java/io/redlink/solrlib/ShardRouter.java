@@ -0,0 +1,149 @@
+/*
+ * Copyright 2017 redlink GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.redlink.solrlib;
+
+import org.apache.solr.client.solrj.request.UpdateRequest;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.common.util.Hash;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Routing for cores with {@link SolrCoreDescriptor#getNumShards() multiple shards} on backends without
+ * distributed indexing (embedded and standalone): every shard is a separate core named
+ * {@link #getShardName(String, int)}, documents are assigned to a shard by a hash of their unique key.
+ */
+public final class ShardRouter {
+
+    private final int numShards;
+
+    public ShardRouter(int numShards) {
+        if (numShards < 1) {
+            throw new IllegalArgumentException("numShards must be positive: " + numShards);
+        }
+        this.numShards = numShards;
+    }
+
+    public int getNumShards() {
+        return numShards;
+    }
+
+    /**
+     * @param coreName the (logical) core
+     * @param shard the shard, {@code 0 <= shard < numShards}
+     * @return the name of the core holding the shard
+     */
+    public static String getShardName(String coreName, int shard) {
+        return coreName + "_shard" + (shard + 1);
+    }
+
+    /**
+     * @return the names of the cores holding the shards of the provided core, ordered by shard
+     */
+    public List<String> getShardNames(String coreName) {
+        final List<String> shardNames = new ArrayList<>(numShards);
+        for (int shard = 0; shard < numShards; shard++) {
+            shardNames.add(getShardName(coreName, shard));
+        }
+        return Collections.unmodifiableList(shardNames);
+    }
+
+    /**
+     * @param id the unique key of a document
+     * @return the shard of the document
+     */
+    public int getShard(String id) {
+        return Math.floorMod(Hash.murmurhash3_x86_32(id, 0, id.length(), 0), numShards);
+    }
+
+    /**
+     * Split the update-request into one request per shard: documents and deletes by id are routed by their
+     * unique key, deletes by query and the request-parameters (e.g. {@code commit}) are sent to every shard.
+     * @param request the update-request
+     * @param uniqueKey the name of the unique key field
+     * @return the request for each shard (ordered by shard), {@code null} if there is nothing to send to a shard
+     * @throws IllegalArgumentException if a document has no unique key
+     */
+    public List<UpdateRequest> route(UpdateRequest request, String uniqueKey) {
+        final ModifiableSolrParams params = request.getParams();
+        final boolean broadcast = (request.getDeleteQuery() != null && !request.getDeleteQuery().isEmpty())
+                || (params != null && params.getParameterNames().iterator().hasNext());
+
+        final List<UpdateRequest> shardRequests = new ArrayList<>(numShards);
+        for (int shard = 0; shard < numShards; shard++) {
+            shardRequests.add(broadcast ? createShardRequest(request) : null);
+        }
+
+        if (request.getDocumentsMap() != null) {
+            for (Map.Entry<SolrInputDocument, Map<String, Object>> entry : request.getDocumentsMap().entrySet()) {
+                final Map<String, Object> options = entry.getValue();
+                getShardRequest(shardRequests, getShard(entry.getKey(), uniqueKey), request).add(entry.getKey(),
+                        options == null ? null : (Integer) options.get(UpdateRequest.COMMIT_WITHIN),
+                        options == null ? null : (Boolean) options.get(UpdateRequest.OVERWRITE));
+            }
+        }
+        final Iterator<SolrInputDocument> docIterator = request.getDocIterator();
+        if (docIterator != null) {
+            while (docIterator.hasNext()) {
+                final SolrInputDocument doc = docIterator.next();
+                getShardRequest(shardRequests, getShard(doc, uniqueKey), request).add(doc);
+            }
+        }
+        if (request.getDeleteByIdMap() != null) {
+            for (Map.Entry<String, Map<String, Object>> entry : request.getDeleteByIdMap().entrySet()) {
+                final Map<String, Object> options = entry.getValue();
+                getShardRequest(shardRequests, getShard(entry.getKey()), request).deleteById(entry.getKey(),
+                        options == null ? null : (Long) options.get(UpdateRequest.VER));
+            }
+        }
+        return shardRequests;
+    }
+
+    private int getShard(SolrInputDocument doc, String uniqueKey) {
+        final Object id = doc.getFieldValue(uniqueKey);
+        if (id == null) {
+            throw new IllegalArgumentException("Document without unique key '" + uniqueKey + "': " + doc);
+        }
+        return getShard(String.valueOf(id));
+    }
+
+    private static UpdateRequest getShardRequest(List<UpdateRequest> shardRequests, int shard, UpdateRequest request) {
+        UpdateRequest shardRequest = shardRequests.get(shard);
+        if (shardRequest == null) {
+            shardRequest = createShardRequest(request);
+            shardRequests.set(shard, shardRequest);
+        }
+        return shardRequest;
+    }
+
+    private static UpdateRequest createShardRequest(UpdateRequest request) {
+        final UpdateRequest shardRequest = new UpdateRequest(request.getPath());
+        if (request.getParams() != null) {
+            shardRequest.setParams(new ModifiableSolrParams(request.getParams()));
+        }
+        shardRequest.setCommitWithin(request.getCommitWithin());
+        shardRequest.setBasicAuthCredentials(request.getBasicAuthUser(), request.getBasicAuthPassword());
+        if (request.getDeleteQuery() != null) {
+            request.getDeleteQuery().forEach(shardRequest::deleteByQuery);
+        }
+        return shardRequest;
+    }
+}
@@ -34,12 +34,35 @@ public class SimpleCoreDescriptor implements SolrCoreDescriptor {
     private final Path coreBundle;
     private int numShards;
     private int replicationFactor;
+    private boolean loadOnStartup;
+    private boolean isTransient;
+    private Path indexTemplate;
+    private String directoryFactory;
+    private StoredFieldsCompression storedFieldsCompression;
+    private double ramBufferSizeMB;
+    private boolean coreBundleAccess;
 
     public SimpleCoreDescriptor(String coreName, Path coreBundle) {
         this.coreName = coreName;
         this.coreBundle = coreBundle;
         numShards = 1;
         replicationFactor = 1;
+        loadOnStartup = true;
+        isTransient = false;
+        indexTemplate = null;
+        directoryFactory = null;
+        storedFieldsCompression = null;
+        ramBufferSizeMB = -1;
+        // subclasses overriding initCoreDirectory might modify the core-directory
+        coreBundleAccess = !overridesInitCoreDirectory(getClass());
+    }
+
+    private static boolean overridesInitCoreDirectory(Class<?> clazz) {
+        try {
+            return clazz.getMethod("initCoreDirectory", Path.class, Path.class).getDeclaringClass() != SimpleCoreDescriptor.class;
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("initCoreDirectory not found in " + clazz.getName(), e);
+        }
     }
 
     @Override
@@ -58,6 +81,49 @@ public class SimpleCoreDescriptor implements SolrCoreDescriptor {
         }
     }
 
+    /**
+     * The core-bundle is accessed directly if {@link #setCoreBundleAccess(boolean) enabled}, which is the default
+     * unless a subclass overrides {@link #initCoreDirectory(Path, Path)}.
+     */
+    @Override
+    public boolean visitCoreBundle(CoreBundleVisitor visitor) throws IOException {
+        if (!coreBundleAccess) {
+            return false;
+        }
+        SolrCoreDescriptor.visitSolrCoreBundle(coreBundle, visitor);
+        return true;
+    }
+
+    public boolean isCoreBundleAccess() {
+        return coreBundleAccess;
+    }
+
+    /**
+     * Allow direct access to the core-bundle via {@link #visitCoreBundle(CoreBundleVisitor)}. Subclasses overriding
+     * {@link #initCoreDirectory(Path, Path)} can enable this if they do not change the core-directory, or disable
+     * it to always go through {@link #initCoreDirectory(Path, Path)}.
+     */
+    public SimpleCoreDescriptor setCoreBundleAccess(boolean coreBundleAccess) {
+        this.coreBundleAccess = coreBundleAccess;
+        return this;
+    }
+
+    /**
+     * Uses the {@link #setIndexTemplate(Path) configured} index-template, or the {@code data/index} directory
+     * of the core-bundle.
+     */
+    @Override
+    public boolean visitIndexTemplate(IndexTemplateVisitor visitor) throws IOException {
+        if (indexTemplate != null) {
+            if (!Files.isDirectory(indexTemplate)) {
+                throw new IllegalArgumentException("Invalid indexTemplate '" + indexTemplate + "': not a directory");
+            }
+            visitor.visit(indexTemplate);
+            return true;
+        }
+        return SolrCoreDescriptor.super.visitIndexTemplate(visitor);
+    }
+
     @Override
     public int getNumShards() {
         return numShards;
@@ -78,6 +144,70 @@ public class SimpleCoreDescriptor implements SolrCoreDescriptor {
         return this;
     }
 
+    @Override
+    public boolean isLoadOnStartup() {
+        return loadOnStartup;
+    }
+
+    @Override
+    public boolean isTransient() {
+        return isTransient;
+    }
+
+    public SimpleCoreDescriptor setLoadOnStartup(boolean loadOnStartup) {
+        this.loadOnStartup = loadOnStartup;
+        return this;
+    }
+
+    public SimpleCoreDescriptor setTransient(boolean isTransient) {
+        this.isTransient = isTransient;
+        return this;
+    }
+
+    @Override
+    public String getDirectoryFactory() {
+        return directoryFactory;
+    }
+
+    public SimpleCoreDescriptor setDirectoryFactory(String directoryFactory) {
+        this.directoryFactory = directoryFactory;
+        return this;
+    }
+
+    @Override
+    public StoredFieldsCompression getStoredFieldsCompression() {
+        return storedFieldsCompression;
+    }
+
+    public SimpleCoreDescriptor setStoredFieldsCompression(StoredFieldsCompression storedFieldsCompression) {
+        this.storedFieldsCompression = storedFieldsCompression;
+        return this;
+    }
+
+    @Override
+    public double getRamBufferSizeMB() {
+        return ramBufferSizeMB;
+    }
+
+    public SimpleCoreDescriptor setRamBufferSizeMB(double ramBufferSizeMB) {
+        this.ramBufferSizeMB = ramBufferSizeMB;
+        return this;
+    }
+
+    public Path getIndexTemplate() {
+        return indexTemplate;
+    }
+
+    /**
+     * @param indexTemplate directory containing a prebuilt index to seed new cores,
+     *                      {@code null} to use the {@code data/index} directory of the core-bundle (if present)
+     * @see SolrCoreDescriptor#visitIndexTemplate(IndexTemplateVisitor)
+     */
+    public SimpleCoreDescriptor setIndexTemplate(Path indexTemplate) {
+        this.indexTemplate = indexTemplate;
+        return this;
+    }
+
     /**
      * Create a {@link SolrCoreDescriptor} from the provided classpath-resource.
      * @param coreName the core-name
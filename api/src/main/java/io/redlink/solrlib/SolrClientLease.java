@@ -0,0 +1,114 @@
+/*
+ * Copyright 2017 redlink GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.redlink.solrlib;
+
+import org.apache.solr.client.solrj.SolrClient;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * A lease on a pooled {@link SolrClient}, retrieved via {@link SolrCoreContainer#getSolrClientLease(String)}.
+ * Closing the lease returns the client to the pool, the underlying client must <strong>not</strong> be closed
+ * by the caller.
+ * <pre>
+ * try (SolrClientLease lease = coreContainer.getSolrClientLease("my-core")) {
+ *     lease.getSolrClient().ping();
+ * }
+ * </pre>
+ */
+public final class SolrClientLease implements AutoCloseable {
+
+    private final String coreName;
+    private final SolrClient solrClient;
+    private final Consumer<SolrClientLease> onRelease;
+    private final AtomicBoolean released = new AtomicBoolean(false);
+    private final long acquiredAt = System.currentTimeMillis();
+    private final long acquiredNanos = System.nanoTime();
+    private final String owner = Thread.currentThread().getName();
+
+    SolrClientLease(String coreName, SolrClient solrClient, Consumer<SolrClientLease> onRelease) {
+        this.coreName = coreName;
+        this.solrClient = solrClient;
+        this.onRelease = onRelease;
+    }
+
+    /**
+     * @return the leased SolrClient, valid until the lease is closed.
+     */
+    public SolrClient getSolrClient() {
+        if (released.get()) {
+            throw new IllegalStateException("Lease for " + coreName + " already released");
+        }
+        return solrClient;
+    }
+
+    /**
+     * @return the name of the core this lease is for
+     */
+    public String getCoreName() {
+        return coreName;
+    }
+
+    /**
+     * @return the timestamp (millis since epoch) when this lease was acquired
+     */
+    public long getAcquiredAt() {
+        return acquiredAt;
+    }
+
+    /**
+     * @return the name of the thread that acquired this lease
+     */
+    public String getOwner() {
+        return owner;
+    }
+
+    /**
+     * @param unit the time-unit of the result
+     * @return for how long this lease is held
+     */
+    public long getHoldTime(TimeUnit unit) {
+        return unit.convert(System.nanoTime() - acquiredNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return {@code true} if this lease was already released
+     */
+    public boolean isReleased() {
+        return released.get();
+    }
+
+    /**
+     * Release the lease and return the SolrClient to the pool. Subsequent calls are ignored.
+     */
+    @Override
+    public void close() {
+        if (released.compareAndSet(false, true)) {
+            onRelease.accept(this);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SolrClientLease{" +
+                "coreName='" + coreName + '\'' +
+                ", owner='" + owner + '\'' +
+                ", holdTime=" + getHoldTime(TimeUnit.MILLISECONDS) + "ms" +
+                '}';
+    }
+}
@@ -21,36 +21,66 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
 
 /**
  */
 public abstract class SolrCoreContainer {
 
+    /** overlay-properties applied by {@link #beginBulkLoad(String)} */
+    private static final Map<String, Object> BULK_LOAD_PROPERTIES;
+    static {
+        final Map<String, Object> bulkLoadProperties = new LinkedHashMap<>();
+        bulkLoadProperties.put("updateHandler.autoCommit.openSearcher", false);
+        bulkLoadProperties.put("updateHandler.autoSoftCommit.maxDocs", -1);
+        bulkLoadProperties.put("updateHandler.autoSoftCommit.maxTime", -1);
+        BULK_LOAD_PROPERTIES = Collections.unmodifiableMap(bulkLoadProperties);
+    }
+
     protected final Logger log = LoggerFactory.getLogger(getClass());
     private final Optional<ExecutorService> executorService;
-    private final CountDownLatch startupComplete;
-    private final Map<String, CountDownLatch> coreInitialized;
+    private volatile ExecutorService coreInitExecutor = null;
+    private final CompletableFuture<Void> startupComplete;
+    private final Map<String, CoreLifecycle> coreLifecycles;
+    private final List<CoreStateListener> coreStateListeners = new CopyOnWriteArrayList<>();
     private final AtomicBoolean initStarted;
-    private Exception initException = null;
-    protected final Map<String, Throwable> coreInitExceptions = new HashMap<>();
+    private volatile Exception initException = null;
     protected final Set<SolrCoreDescriptor> coreDescriptors;
-    protected final Map<String, SolrCoreDescriptor> availableCores = new HashMap<>();
+    private final Map<String, PooledSolrClient> solrClientPool = new ConcurrentHashMap<>();
+    /** the overlay-properties of cores in bulk-load mode, before the bulk-load started */
+    private final Map<String, Map<String, Object>> bulkLoads = new ConcurrentHashMap<>();
 
     public SolrCoreContainer(Set<SolrCoreDescriptor> coreDescriptors, ExecutorService executorService) {
         this.executorService = Optional.ofNullable(executorService);
-        startupComplete = new CountDownLatch(1);
-        coreInitialized = new HashMap<>();
+        startupComplete = new CompletableFuture<>();
+        coreLifecycles = new ConcurrentHashMap<>();
         initStarted = new AtomicBoolean(false);
-        this.coreDescriptors = coreDescriptors;
+        // updated by registerCore and unregisterCore
+        this.coreDescriptors = new CopyOnWriteArraySet<>(coreDescriptors);
+        coreDescriptors.forEach(d -> coreLifecycles.putIfAbsent(d.getCoreName(), new CoreLifecycle(d.getCoreName())));
     }
 
     @SuppressWarnings("squid:S3776")
@@ -58,7 +88,10 @@ public abstract class SolrCoreContainer {
         if (initStarted.compareAndSet(false, true)) {
             final long initStart = System.currentTimeMillis();
             log.debug("Initializing SolrCoreContainer");
-            final ExecutorService lEexecutorService = this.executorService.orElseGet(Executors::newSingleThreadExecutor);
+            // core-init callbacks run concurrently to init(), so cores become available as soon as they are ready
+            final ExecutorService lEexecutorService = this.executorService.orElseGet(Executors::newCachedThreadPool);
+            // kept for cores registered at runtime
+            coreInitExecutor = lEexecutorService;
             lEexecutorService
                     .execute(() -> {
                         try {
@@ -79,11 +112,13 @@ public abstract class SolrCoreContainer {
                             initException = t;
                         } finally {
                             long initDuration = System.currentTimeMillis() - initStart;
-                            startupComplete.countDown();
+                            // release everyone waiting for a core that was not deployed
+                            final Throwable notDeployed = initException;
+                            coreLifecycles.values().forEach(lifecycle -> lifecycle.transition(SolrCoreState.DEPLOYING,
+                                    SolrCoreState.FAILED, notDeployed != null ? notDeployed
+                                            : new IllegalStateException("Core " + lifecycle.coreName + " is not available")));
+                            startupComplete.complete(null);
                             log.debug("SolrCoreContainer initialized in {}ms", initDuration);
-                            if (!this.executorService.isPresent()) {
-                                lEexecutorService.shutdown();
-                            }
                         }
                     });
         } else {
@@ -98,37 +133,347 @@ public abstract class SolrCoreContainer {
 
     protected abstract void init(ExecutorService executorService) throws IOException, SolrServerException;
 
-    protected void scheduleCoreInit(ExecutorService executorService, SolrCoreDescriptor coreDescriptor, boolean newCore) {
-        final CountDownLatch coreLatch = coreInitialized.computeIfAbsent(coreDescriptor.getCoreName(), s -> new CountDownLatch(1));
-        executorService.execute(() -> {
+    /**
+     * Deploy the provided cores using up to {@code parallelism} concurrent threads.
+     * <p>
+     * Cores with a name that is already taken are skipped. An exception while deploying a core is recorded
+     * for that core (and propagated by {@link #getSolrClient(String)}), it does not affect the deployment of the
+     * other cores. The deployment runs on a dedicated thread-pool: the container's executor is running
+     * {@link #init(ExecutorService)} and the core-init callbacks, waiting for tasks on that executor would
+     * dead-lock with a single-threaded executor.
+     * @param coreDescriptors the cores to deploy
+     * @param parallelism the max. number of cores to deploy concurrently, {@code <= 1} to deploy sequentially
+     *                    in the calling thread
+     * @param deployer the backend-specific deployment of a single core
+     * @throws IOException if the deployment was interrupted
+     */
+    protected void deployCores(Collection<SolrCoreDescriptor> coreDescriptors, int parallelism, CoreDeployer deployer) throws IOException {
+        final Map<String, SolrCoreDescriptor> toDeploy = new LinkedHashMap<>();
+        for (SolrCoreDescriptor coreDescriptor : coreDescriptors) {
+            final String coreName = coreDescriptor.getCoreName();
+            if (isCoreAvailable(coreName) || toDeploy.containsKey(coreName)) {
+                log.warn("CoreName-Clash: {} already initialized. Skipping {}", coreName, coreDescriptor.getClass());
+            } else {
+                toDeploy.put(coreName, coreDescriptor);
+            }
+        }
+
+        if (parallelism <= 1 || toDeploy.size() <= 1) {
+            toDeploy.values().forEach(coreDescriptor -> deployCore(coreDescriptor, deployer));
+        } else {
+            final ExecutorService deployExecutor = Executors.newFixedThreadPool(Math.min(parallelism, toDeploy.size()));
             try {
-                awaitInitCompletion();
-                initCore(coreDescriptor, newCore);
+                log.debug("Deploying {} cores with parallelism {}", toDeploy.size(), parallelism);
+                deployExecutor.invokeAll(toDeploy.values().stream()
+                        .<Callable<Void>>map(coreDescriptor -> () -> {
+                            deployCore(coreDescriptor, deployer);
+                            return null;
+                        })
+                        .collect(Collectors.toList()));
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
-                throw new IllegalStateException("Interrupted!", e);
+                throw new IOException("Interrupted while deploying cores", e);
             } finally {
-                coreLatch.countDown();
+                deployExecutor.shutdownNow();
+            }
+        }
+    }
+
+    private void deployCore(SolrCoreDescriptor coreDescriptor, CoreDeployer deployer) {
+        final String coreName = coreDescriptor.getCoreName();
+        try {
+            deployer.deploy(coreDescriptor);
+        } catch (IOException | SolrServerException | RuntimeException e) {
+            if (log.isDebugEnabled()) {
+                log.error("Error deploying core {}: {}", coreName, e.getMessage(), e);
+            } else {
+                log.error("Error deploying core {}: {}", coreName, e.getMessage());
+            }
+            markCoreFailed(coreName, e);
+        }
+    }
+
+    /**
+     * Mark the provided core as available ({@link SolrCoreState#CREATED}) and schedule the core-init callbacks
+     * ({@link SolrCoreDescriptor#onCoreCreated(SolrClient)}, {@link SolrCoreDescriptor#onCoreStarted(SolrClient)}).
+     * The core is ready to serve as soon as the callbacks are completed, independent of other cores.
+     */
+    protected void scheduleCoreInit(ExecutorService executorService, SolrCoreDescriptor coreDescriptor, boolean newCore) {
+        final String coreName = coreDescriptor.getCoreName();
+        final CoreLifecycle lifecycle = coreLifecycles.computeIfAbsent(coreName, CoreLifecycle::new);
+        if (!lifecycle.transition(SolrCoreState.DEPLOYING, SolrCoreState.CREATED, null)) {
+            log.warn("Not scheduling core-init for {}, core is {}", coreName, lifecycle.getState());
+            return;
+        }
+        executorService.execute(() -> {
+            if (lifecycle.transition(SolrCoreState.CREATED, SolrCoreState.STARTING, null)) {
+                initCore(lifecycle, coreDescriptor, newCore);
             }
         });
     }
 
-    private void initCore(SolrCoreDescriptor coreDescriptor, boolean isNewCore) {
+    /**
+     * Mark the provided core as available ({@link SolrCoreState#CREATED}), but defer loading and the core-init
+     * callbacks until the core is requested for the first time (e.g. via {@link #getSolrClient(String)}).
+     * Cores with deferred initialisation do not delay {@link #isStartupComplete()}.
+     * @param coreLoader loads the core on first access, returns {@code true} if the core is new
+     *                   (i.e. {@link SolrCoreDescriptor#onCoreCreated(SolrClient)} should be called)
+     */
+    protected void deferCoreInit(ExecutorService executorService, SolrCoreDescriptor coreDescriptor, Callable<Boolean> coreLoader) {
+        final String coreName = coreDescriptor.getCoreName();
+        final CoreLifecycle lifecycle = coreLifecycles.computeIfAbsent(coreName, CoreLifecycle::new);
+        lifecycle.deferredInit.set(() -> executorService.execute(() -> {
+            if (lifecycle.transition(SolrCoreState.CREATED, SolrCoreState.STARTING, null)) {
+                final boolean isNewCore;
+                try {
+                    isNewCore = coreLoader.call();
+                } catch (final Exception e) {
+                    log.warn("Error while loading core {}: {}", coreName, e.getMessage());
+                    lifecycle.transition(SolrCoreState.STARTING, SolrCoreState.FAILED, e);
+                    return;
+                }
+                initCore(lifecycle, coreDescriptor, isNewCore);
+            }
+        }));
+        if (!lifecycle.transition(SolrCoreState.DEPLOYING, SolrCoreState.CREATED, null)) {
+            lifecycle.deferredInit.set(null);
+            log.warn("Not deferring core-init for {}, core is {}", coreName, lifecycle.getState());
+        }
+    }
+
+    private void initCore(CoreLifecycle lifecycle, SolrCoreDescriptor coreDescriptor, boolean isNewCore) {
         try (SolrClient solrClient = createSolrClient(coreDescriptor.getCoreName())) {
             if (isNewCore) {
                 coreDescriptor.onCoreCreated(solrClient);
             }
             coreDescriptor.onCoreStarted(solrClient);
-        } catch (IOException | SolrServerException e) {
+            lifecycle.transition(SolrCoreState.STARTING, SolrCoreState.READY, null);
+        } catch (IOException | SolrServerException | RuntimeException e) {
             if (log.isDebugEnabled()) {
                 log.warn("Error while initializing core {}: {}", coreDescriptor.getCoreName(), e.getMessage(), e);
             }
-            //noinspection ThrowableResultOfMethodCallIgnored
-            coreInitExceptions.put(coreDescriptor.getCoreName(), e);
+            lifecycle.transition(SolrCoreState.STARTING, SolrCoreState.FAILED, e);
         }
     }
 
+    /**
+     * Mark the provided core as {@link SolrCoreState#FAILED}. The cause is propagated to everyone requesting
+     * a SolrClient for the core.
+     * @return {@code true} if the core was marked as failed, {@code false} if it was already failed or closing.
+     */
+    protected boolean markCoreFailed(String coreName, Throwable cause) {
+        final CoreLifecycle lifecycle = coreLifecycles.computeIfAbsent(coreName, CoreLifecycle::new);
+        while (true) {
+            final SolrCoreState current = lifecycle.getState();
+            if (!current.canTransitionTo(SolrCoreState.FAILED)) {
+                return false;
+            } else if (lifecycle.transition(current, SolrCoreState.FAILED, cause)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Shutdown the SolrCoreContainer. Implementations must call {@code super.shutdown()} to move all
+     * cores to {@link SolrCoreState#CLOSING} and release the pooled SolrClients;
+     * leases that are still held at this point are reported as leaked.
+     */
     public void shutdown() throws IOException {
+        coreLifecycles.values().forEach(CoreLifecycle::close);
+        solrClientPool.keySet().forEach(this::releasePooledSolrClient);
+        final ExecutorService lExecutorService = coreInitExecutor;
+        coreInitExecutor = null;
+        if (lExecutorService != null && !this.executorService.isPresent()) {
+            lExecutorService.shutdown();
+        }
+    }
+
+    /**
+     * Register and deploy an additional core at runtime, without affecting the other cores of this container.
+     * The method returns as soon as the core is deployed, the core-init callbacks are executed asynchronously
+     * (use {@link #getSolrClient(String, long, TimeUnit)} or {@link #getSolrClientAsync(String)} to wait for the
+     * core to become ready).
+     * <p>
+     * A core that {@link SolrCoreState#FAILED failed} can be registered again, e.g. with a fixed descriptor.
+     * @param coreDescriptor the core to register
+     * @throws IllegalStateException if the container is not initialized, or a core with the same name is already registered
+     * @throws IOException if deploying the core failed
+     * @throws SolrServerException if deploying the core failed
+     */
+    public void registerCore(SolrCoreDescriptor coreDescriptor) throws IOException, SolrServerException {
+        final String coreName = coreDescriptor.getCoreName();
+        awaitRuntimeChangesAllowed();
+
+        final CoreLifecycle lifecycle = new CoreLifecycle(coreName);
+        final CoreLifecycle registered = coreLifecycles.compute(coreName,
+                (name, existing) -> existing == null || existing.getState() == SolrCoreState.FAILED ? lifecycle : existing);
+        if (registered != lifecycle) {
+            throw new IllegalStateException("Core " + coreName + " already registered (" + registered.getState() + ")");
+        }
+        // a client pooled for a previous registration must not be re-used
+        releasePooledSolrClient(coreName);
+        // replaces the descriptor of a previous (failed) registration
+        coreDescriptors.removeIf(d -> coreName.equals(d.getCoreName()));
+        coreDescriptors.add(coreDescriptor);
+
+        log.info("Registering core {}", coreName);
+        try {
+            doRegisterCore(coreDescriptor, coreInitExecutor);
+        } catch (IOException | SolrServerException | RuntimeException e) {
+            markCoreFailed(coreName, e);
+            throw e;
+        }
+        lifecycle.transition(SolrCoreState.DEPLOYING, SolrCoreState.FAILED,
+                new IllegalStateException("Core " + coreName + " is not available"));
+    }
+
+    /**
+     * Unregister a core at runtime: the core is moved to {@link SolrCoreState#CLOSING}, its pooled SolrClient
+     * is released and the core is removed from the Solr backend. All other cores are not affected.
+     * @param coreName the core to remove
+     * @throws IllegalArgumentException if the core is unknown
+     * @throws IOException if removing the core from the backend failed
+     * @throws SolrServerException if removing the core from the backend failed
+     */
+    public void unregisterCore(String coreName) throws IOException, SolrServerException {
+        awaitRuntimeChangesAllowed();
+        final CoreLifecycle lifecycle = coreLifecycles.get(coreName);
+        if (lifecycle == null) {
+            throw new IllegalArgumentException("Unknown core: " + coreName);
+        }
+
+        log.info("Unregistering core {}", coreName);
+        bulkLoads.remove(coreName);
+        final boolean deployed = lifecycle.timestamps.get(SolrCoreState.CREATED.ordinal()) >= 0;
+        lifecycle.close();
+        releasePooledSolrClient(coreName);
+        try {
+            if (deployed) {
+                doUnregisterCore(coreName);
+            }
+        } finally {
+            coreLifecycles.remove(coreName, lifecycle);
+            coreDescriptors.removeIf(d -> coreName.equals(d.getCoreName()));
+        }
+    }
+
+    /**
+     * @return the descriptors of all cores of this container, including the cores {@link #registerCore(SolrCoreDescriptor) registered}
+     *      at runtime (and without the cores {@link #unregisterCore(String) unregistered} at runtime)
+     */
+    public Set<SolrCoreDescriptor> getCoreDescriptors() {
+        return Collections.unmodifiableSet(coreDescriptors);
+    }
+
+    /**
+     * Switch the core to bulk-load settings via the Config API: automatic soft-commits are disabled and automatic
+     * hard-commits no longer open a new searcher, so the core does not reopen searchers while loading.
+     * The settings are stored in the config-overlay of the core (shared by all replicas in SolrCloud) and the core
+     * is reloaded. Use {@link #endBulkLoad(String, boolean)} to restore the previous settings.
+     * <p>
+     * <strong>Note:</strong> the update-log and the RAM-buffer can not be changed via the Config API; automatic
+     * hard-commits are kept to roll over the transaction-log. For embedded cores, the RAM-buffer can be set via
+     * {@link SolrCoreDescriptor#getRamBufferSizeMB()}.
+     * @param coreName the core
+     * @throws IllegalStateException if the core is already in bulk-load mode
+     * @throws IOException if updating the config failed
+     * @throws SolrServerException if updating the config failed
+     */
+    public void beginBulkLoad(String coreName) throws IOException, SolrServerException {
+        try (SolrClientLease lease = getSolrClientLease(coreName)) {
+            final Map<String, Object> previous = CoreConfigApi.getOverlayProperties(lease.getSolrClient(), BULK_LOAD_PROPERTIES.keySet());
+            if (bulkLoads.putIfAbsent(coreName, previous) != null) {
+                throw new IllegalStateException("Core " + coreName + " is already in bulk-load mode");
+            }
+            try {
+                CoreConfigApi.updateOverlayProperties(lease.getSolrClient(), BULK_LOAD_PROPERTIES, Collections.emptySet());
+            } catch (IOException | SolrServerException | RuntimeException e) {
+                bulkLoads.remove(coreName, previous);
+                throw e;
+            }
+            log.info("Started bulk-load for core {}", coreName);
+        }
+    }
+
+    /**
+     * Finish the bulk-load of the core: the changes are committed (and optionally merged) and the settings
+     * from before {@link #beginBulkLoad(String)} are restored.
+     * @param coreName the core
+     * @param forceMerge merge the index into a single segment after the bulk-load
+     * @throws IllegalStateException if the core is not in bulk-load mode
+     * @throws IOException if committing or restoring the config failed
+     * @throws SolrServerException if committing or restoring the config failed
+     */
+    public void endBulkLoad(String coreName, boolean forceMerge) throws IOException, SolrServerException {
+        final Map<String, Object> previous = bulkLoads.remove(coreName);
+        if (previous == null) {
+            throw new IllegalStateException("Core " + coreName + " is not in bulk-load mode");
+        }
+        try (SolrClientLease lease = getSolrClientLease(coreName)) {
+            final SolrClient solrClient = lease.getSolrClient();
+            try {
+                solrClient.commit();
+                if (forceMerge) {
+                    solrClient.optimize(true, true, 1);
+                }
+            } finally {
+                final Set<String> unset = new HashSet<>(BULK_LOAD_PROPERTIES.keySet());
+                unset.removeAll(previous.keySet());
+                CoreConfigApi.updateOverlayProperties(solrClient, previous, unset);
+            }
+            log.info("Finished bulk-load for core {}", coreName);
+        }
+    }
+
+    /**
+     * @return {@code true} if the core is in bulk-load mode
+     * @see #beginBulkLoad(String)
+     */
+    public boolean isBulkLoading(String coreName) {
+        return bulkLoads.containsKey(coreName);
+    }
+
+    private void awaitRuntimeChangesAllowed() throws IOException {
+        if (!initStarted.get()) {
+            throw new IllegalStateException("SolrCoreContainer not initialized!");
+        }
+        try {
+            awaitInitCompletion();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for SolrCoreContainer initialisation", e);
+        }
+        if (coreInitExecutor == null) {
+            throw new IllegalStateException("SolrCoreContainer already shut down!");
+        }
+    }
+
+    /**
+     * Backend-specific deployment of a core registered at runtime, see {@link #registerCore(SolrCoreDescriptor)}.
+     * Implementations must call {@link #scheduleCoreInit(ExecutorService, SolrCoreDescriptor, boolean)} once the core
+     * is deployed. The default implementation does not support runtime registration.
+     */
+    protected void doRegisterCore(SolrCoreDescriptor coreDescriptor, ExecutorService executorService) throws IOException, SolrServerException {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support registering cores at runtime");
+    }
+
+    /**
+     * Backend-specific removal of a core, see {@link #unregisterCore(String)}.
+     * The default implementation does not support runtime removal.
+     */
+    protected void doUnregisterCore(String coreName) throws IOException, SolrServerException {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support unregistering cores at runtime");
+    }
+
+    /**
+     * Remove the pooled SolrClient of the provided core. The client is closed once all outstanding
+     * leases are released.
+     */
+    protected void releasePooledSolrClient(String coreName) {
+        final PooledSolrClient pooled = solrClientPool.remove(coreName);
+        if (pooled != null) {
+            pooled.retire();
+        }
     }
 
     protected abstract SolrClient createSolrClient(String coreName);
@@ -139,49 +484,195 @@ public abstract class SolrCoreContainer {
      * @param coreName the core to connect to
      * @return a SolrClient
      * @throws SolrServerException if the initialisation of the requested core failed
+     * @see #getSolrClientLease(String)
      */
     public SolrClient getSolrClient(String coreName) throws SolrServerException {
-        try {
-            // Wait for the CoreContainer to be online
-            awaitInitCompletion();
-            // Check for and propagate any exception during CoreContainer initialisation
-            if (initException != null) {
-                throw new SolrServerException("Exception initializing SolrCoreContainer", initException);
-            }
+        awaitCoreAvailable(coreName);
+        return createSolrClient(coreName);
+    }
 
-            // Check for and propagate any core-specific exception during CoreContainer initialisation
-            final Throwable coreInitException = this.coreInitExceptions.get(coreName);
-            if (coreInitException != null) {
-                throw new SolrServerException("Exception initializing core " + coreName, coreInitException);
+    /**
+     * Lease a pooled SolrClient for the provided core. The SolrClient is shared between all leases of the
+     * core, closing the lease returns it to the pool:
+     * <pre>
+     * try (SolrClientLease lease = coreContainer.getSolrClientLease(coreName)) {
+     *     lease.getSolrClient().query(query);
+     * }
+     * </pre>
+     * @param coreName the core to connect to
+     * @return a lease on the pooled SolrClient
+     * @throws SolrServerException if the initialisation of the requested core failed
+     */
+    public SolrClientLease getSolrClientLease(String coreName) throws SolrServerException {
+        awaitCoreAvailable(coreName);
+        while (true) {
+            final PooledSolrClient pooled = solrClientPool.computeIfAbsent(coreName,
+                    name -> new PooledSolrClient(name, createSolrClient(name)));
+            final SolrClientLease lease = pooled.acquire();
+            if (lease != null) {
+                return lease;
             }
+            // the pooled client was released concurrently, retry with a new one
+            solrClientPool.remove(coreName, pooled);
+        }
+    }
 
-            // Wait for the core-initialisation to be completed
-            awaitCoreInitCompletion(coreName);
-            // Check for and propagate any core-specific exception during core initialisation
-            final Throwable coreInitExceptionDuringCallback = this.coreInitExceptions.get(coreName);
-            if (coreInitExceptionDuringCallback != null) {
-                throw new SolrServerException("Exception initializing core " + coreName, coreInitExceptionDuringCallback);
+    /**
+     * Lease a pooled SolrClient for the provided SolrCoreDescriptor.
+     * @param coreDescriptor the core to connect to
+     * @return a lease on the pooled SolrClient
+     * @throws SolrServerException if the initialisation of the requested core failed
+     * @see #getSolrClientLease(String)
+     */
+    public SolrClientLease getSolrClientLease(SolrCoreDescriptor coreDescriptor) throws SolrServerException {
+        return getSolrClientLease(coreDescriptor.getCoreName());
+    }
+
+    /**
+     * @return all currently held leases
+     */
+    public Collection<SolrClientLease> getActiveLeases() {
+        final List<SolrClientLease> leases = new ArrayList<>();
+        solrClientPool.values().forEach(p -> leases.addAll(p.leases));
+        return leases;
+    }
+
+    /**
+     * Check for leases that are held longer than the provided threshold. Such leases are logged,
+     * as they usually indicate a lease that was never closed.
+     * @param threshold the max. expected hold-time
+     * @param unit the time-unit of {@code threshold}
+     * @return all leases held longer than the provided threshold
+     */
+    public Collection<SolrClientLease> checkLongHeldLeases(long threshold, TimeUnit unit) {
+        final List<SolrClientLease> longHeld = new ArrayList<>();
+        for (SolrClientLease lease : getActiveLeases()) {
+            if (lease.getHoldTime(unit) > threshold) {
+                log.warn("SolrClientLease for {} held by {} for {}ms", lease.getCoreName(), lease.getOwner(),
+                        lease.getHoldTime(TimeUnit.MILLISECONDS));
+                longHeld.add(lease);
             }
+        }
+        return longHeld;
+    }
+
+    /**
+     * Get a SolrClient for the provided core without blocking the calling thread.
+     * <strong>Note:</strong> the caller is responsible for closing the returned SolrClient to avoid resource leakage.
+     * @param coreName the core to connect to
+     * @return a future that completes with the SolrClient as soon as the core is ready, or completes
+     *      exceptionally with a {@link SolrServerException} if the initialisation of the requested core failed.
+     */
+    public CompletableFuture<SolrClient> getSolrClientAsync(String coreName) {
+        return coreReady(coreName).thenApply(v -> createSolrClient(coreName));
+    }
+
+    /**
+     * Get a SolrClient for the provided SolrCoreDescriptor without blocking the calling thread.
+     * @param coreDescriptor the core to connect to
+     * @return a future that completes with the SolrClient as soon as the core is ready
+     * @see #getSolrClientAsync(String)
+     */
+    public CompletableFuture<SolrClient> getSolrClientAsync(SolrCoreDescriptor coreDescriptor) {
+        return getSolrClientAsync(coreDescriptor.getCoreName());
+    }
+
+    /**
+     * Get a SolrClient for the provided core, waiting at most the given time for the core to become ready.
+     * <strong>Note:</strong> the caller is responsible for closing the returned SolrClient to avoid resource leakage.
+     * @param coreName the core to connect to
+     * @param timeout the max. time to wait
+     * @param unit the time-unit of {@code timeout}
+     * @return a SolrClient
+     * @throws SolrServerException if the initialisation of the requested core failed
+     * @throws TimeoutException if the core did not become ready within the given time
+     */
+    public SolrClient getSolrClient(String coreName, long timeout, TimeUnit unit) throws SolrServerException, TimeoutException {
+        try {
+            coreReady(coreName).get(timeout, unit);
             return createSolrClient(coreName);
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             throw new IllegalStateException("Could not retrieve SolrClient '" + coreName + "'", e);
+        } catch (ExecutionException e) {
+            throw unwrapCoreInitException(e);
+        }
+    }
+
+    private void awaitCoreAvailable(String coreName) throws SolrServerException {
+        try {
+            coreReady(coreName).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Could not retrieve SolrClient '" + coreName + "'", e);
+        } catch (ExecutionException e) {
+            throw unwrapCoreInitException(e);
+        }
+    }
+
+    /**
+     * @return a future that completes when the provided core is initialized, or completes exceptionally
+     *      if the initialisation of the core failed.
+     */
+    private CompletableFuture<Void> coreReady(String coreName) {
+        final CoreLifecycle lifecycle = coreLifecycles.get(coreName);
+        if (lifecycle == null) {
+            final CompletableFuture<Void> unknown = new CompletableFuture<>();
+            unknown.completeExceptionally(new IllegalArgumentException("Unknown core: " + coreName));
+            return unknown;
+        }
+        lifecycle.startDeferredInit();
+        // Wait for the core-initialisation to be completed
+        return lifecycle.settled.thenRun(() -> {
+            final CoreTransition current = lifecycle.current.get();
+            switch (current.state) {
+                case READY:
+                    return;
+                case FAILED:
+                    // propagate any core-specific exception during deployment or core initialisation
+                    throw new CompletionException(new SolrServerException("Exception initializing core " + coreName, current.cause));
+                default:
+                    throw new CompletionException(new SolrServerException("Core " + coreName + " is " + current.state));
+            }
+        });
+    }
+
+    private static SolrServerException unwrapCoreInitException(ExecutionException e) {
+        final Throwable cause = e.getCause();
+        if (cause instanceof SolrServerException) {
+            return (SolrServerException) cause;
+        } else if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+            throw (Error) cause;
+        } else {
+            return new SolrServerException(cause);
         }
     }
 
     protected void awaitInitCompletion() throws InterruptedException {
-        startupComplete.await();
+        await(startupComplete);
     }
 
     protected void awaitCoreInitCompletion(String coreName) throws InterruptedException {
-        final CountDownLatch coreLatch = coreInitialized.get(coreName);
-        if (coreLatch != null) {
-            coreLatch.await();
+        final CoreLifecycle lifecycle = coreLifecycles.get(coreName);
+        if (lifecycle != null) {
+            lifecycle.startDeferredInit();
+            await(lifecycle.settled);
         } else {
             throw new IllegalArgumentException("Unknown core: " + coreName);
         }
     }
 
+    private static void await(CompletableFuture<Void> future) throws InterruptedException {
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            // never completed exceptionally
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
     /**
      * Get a SolrClient for the provided SolrCoreDescriptor.
      * <strong>Note:</strong> the caller is responsible for closing the returned SolrClient to avoid resource leakage.
@@ -194,31 +685,265 @@ public abstract class SolrCoreContainer {
     }
 
     /**
-     * Non-blocking check if startup of the SolrCoreContainer is complete.
+     * Non-blocking check if startup of the SolrCoreContainer is complete, i.e. all cores are deployed
+     * and initialized.
      * @return {@code true} if startup is complete.
+     * @see #isCoreReady(String)
      */
     public boolean isStartupComplete() {
-        try {
-            return startupComplete.await(-1, TimeUnit.MILLISECONDS);
-        } catch (InterruptedException e) {
-            // This should never happen...
-            Thread.currentThread().interrupt();
-            return false;
-        }
+        return startupComplete.isDone()
+                && coreLifecycles.values().stream().allMatch(l -> l.getState().isSettled() || l.deferredInit.get() != null);
+    }
+
+    /**
+     * Non-blocking check if the given core is ready to serve requests, i.e. it is deployed
+     * and successfully initialized. Cores become ready individually, before the startup of
+     * the SolrCoreContainer is complete.
+     * @return {@code true} if the core is ready
+     */
+    public boolean isCoreReady(String coreName) {
+        return getCoreState(coreName) == SolrCoreState.READY;
+    }
+
+    /**
+     * Non-blocking check if the given core is ready to serve requests.
+     * @see #isCoreReady(String)
+     */
+    public boolean isCoreReady(SolrCoreDescriptor coreDescriptor) {
+        return isCoreReady(coreDescriptor.getCoreName());
     }
 
     /**
-     * Check if the given core is available (i.e. initialized)
+     * Check if the given core is available (i.e. deployed, but not necessarily ready)
+     * @see SolrCoreState#isAvailable()
      */
     public boolean isCoreAvailable(String coreName) {
-        return availableCores.containsKey(coreName);
+        final SolrCoreState state = getCoreState(coreName);
+        return state != null && state.isAvailable();
     }
 
     /**
-     * Check if the given core is available (i.e. initialized)
+     * Check if the given core is available (i.e. deployed, but not necessarily ready)
      */
     public boolean isCoreAvailable(SolrCoreDescriptor coreDescriptor) {
         return isCoreAvailable(coreDescriptor.getCoreName());
     }
 
+    /**
+     * Non-blocking check if the initialisation of the given core is deferred until it is requested for the
+     * first time (see {@link #deferCoreInit(ExecutorService, SolrCoreDescriptor, Callable)}).
+     * @return {@code true} if the core is available, but not yet loaded and initialized
+     */
+    public boolean isCoreInitDeferred(String coreName) {
+        final CoreLifecycle lifecycle = coreLifecycles.get(coreName);
+        return lifecycle != null && lifecycle.getState() == SolrCoreState.CREATED && lifecycle.deferredInit.get() != null;
+    }
+
+    /**
+     * Non-blocking check if the given core is currently loaded by the Solr backend, i.e. a request would not
+     * (re-)load it. Use this to monitor cores without interfering with lazy or transient cores.
+     * Remote backends keep all available cores loaded.
+     * @see #isCoreAvailable(String)
+     */
+    public boolean isCoreResident(String coreName) {
+        return isCoreAvailable(coreName);
+    }
+
+    /**
+     * Non-blocking lookup of the current lifecycle-state of a core.
+     * @param coreName the core
+     * @return the current state of the core, or {@code null} if the core is unknown
+     */
+    public SolrCoreState getCoreState(String coreName) {
+        final CoreLifecycle lifecycle = coreLifecycles.get(coreName);
+        return lifecycle == null ? null : lifecycle.getState();
+    }
+
+    /**
+     * @return a snapshot of the lifecycle-states of all cores
+     */
+    public Map<String, SolrCoreState> getCoreStates() {
+        final Map<String, SolrCoreState> states = new LinkedHashMap<>();
+        coreLifecycles.forEach((coreName, lifecycle) -> states.put(coreName, lifecycle.getState()));
+        return Collections.unmodifiableMap(states);
+    }
+
+    /**
+     * @param coreName the core
+     * @param state the state
+     * @return the timestamp (millis since epoch) when the core (last) entered the provided state,
+     *      or {@code -1} if the core never was in that state.
+     */
+    public long getCoreStateTimestamp(String coreName, SolrCoreState state) {
+        final CoreLifecycle lifecycle = coreLifecycles.get(coreName);
+        return lifecycle == null ? -1 : lifecycle.timestamps.get(state.ordinal());
+    }
+
+    /**
+     * Register a listener that is notified on every state-transition of a core. Listeners are called
+     * synchronously in the thread performing the transition, so they should return quickly.
+     */
+    public void addCoreStateListener(CoreStateListener listener) {
+        coreStateListeners.add(listener);
+    }
+
+    public void removeCoreStateListener(CoreStateListener listener) {
+        coreStateListeners.remove(listener);
+    }
+
+    private void notifyCoreStateListeners(String coreName, SolrCoreState from, SolrCoreState to) {
+        for (CoreStateListener listener : coreStateListeners) {
+            try {
+                listener.onStateChange(coreName, from, to);
+            } catch (final RuntimeException e) {
+                log.warn("CoreStateListener {} failed on {} ({} -> {}): {}", listener, coreName, from, to, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Immutable snapshot of a core's state, swapped atomically on each transition.
+     */
+    private static final class CoreTransition {
+        private final SolrCoreState state;
+        private final Throwable cause;
+
+        private CoreTransition(SolrCoreState state, Throwable cause) {
+            this.state = state;
+            this.cause = cause;
+        }
+    }
+
+    /**
+     * The lifecycle of a single core. All transitions are lock-free compare-and-set operations, so the
+     * state can be read from the request-path without contention.
+     */
+    private final class CoreLifecycle {
+        private final String coreName;
+        private final AtomicReference<CoreTransition> current =
+                new AtomicReference<>(new CoreTransition(SolrCoreState.DEPLOYING, null));
+        private final AtomicLongArray timestamps = new AtomicLongArray(SolrCoreState.values().length);
+        /** completed as soon as the core reaches a {@link SolrCoreState#isSettled() settled} state */
+        private final CompletableFuture<Void> settled = new CompletableFuture<>();
+        /** core-init deferred until first access */
+        private final AtomicReference<Runnable> deferredInit = new AtomicReference<>();
+
+        private CoreLifecycle(String coreName) {
+            this.coreName = coreName;
+            for (int i = 0; i < timestamps.length(); i++) {
+                timestamps.set(i, -1);
+            }
+            timestamps.set(SolrCoreState.DEPLOYING.ordinal(), System.currentTimeMillis());
+        }
+
+        private SolrCoreState getState() {
+            return current.get().state;
+        }
+
+        /**
+         * Atomically transition from {@code from} to {@code to}.
+         * @return {@code true} if the transition was performed, {@code false} if the core was not in state {@code from}
+         */
+        private boolean transition(SolrCoreState from, SolrCoreState to, Throwable cause) {
+            if (!from.canTransitionTo(to)) {
+                throw new IllegalArgumentException("Invalid transition " + from + " -> " + to);
+            }
+            final CoreTransition expected = current.get();
+            if (expected.state != from || !current.compareAndSet(expected, new CoreTransition(to, cause))) {
+                return false;
+            }
+            timestamps.set(to.ordinal(), System.currentTimeMillis());
+            log.debug("Core {}: {} -> {}", coreName, from, to);
+            notifyCoreStateListeners(coreName, from, to);
+            if (to.isSettled()) {
+                settled.complete(null);
+            }
+            return true;
+        }
+
+        private void startDeferredInit() {
+            final Runnable init = deferredInit.getAndSet(null);
+            if (init != null) {
+                log.debug("Core {} requested, starting deferred core-init", coreName);
+                init.run();
+            }
+        }
+
+        private void close() {
+            deferredInit.set(null);
+            while (true) {
+                final SolrCoreState state = getState();
+                if (!state.canTransitionTo(SolrCoreState.CLOSING) || transition(state, SolrCoreState.CLOSING, null)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Listener for lifecycle-state transitions of cores.
+     * @see #addCoreStateListener(CoreStateListener)
+     */
+    @FunctionalInterface
+    public interface CoreStateListener {
+        void onStateChange(String coreName, SolrCoreState from, SolrCoreState to);
+    }
+
+    /**
+     * A reference-counted SolrClient, shared by all leases of a core.
+     */
+    private class PooledSolrClient {
+        private final String coreName;
+        private final SolrClient solrClient;
+        private final Set<SolrClientLease> leases = ConcurrentHashMap.newKeySet();
+        private boolean retired = false;
+
+        private PooledSolrClient(String coreName, SolrClient solrClient) {
+            this.coreName = coreName;
+            this.solrClient = solrClient;
+        }
+
+        private synchronized SolrClientLease acquire() {
+            if (retired) {
+                return null;
+            }
+            final SolrClientLease lease = new SolrClientLease(coreName, solrClient, this::release);
+            leases.add(lease);
+            return lease;
+        }
+
+        private synchronized void release(SolrClientLease lease) {
+            leases.remove(lease);
+            if (retired && leases.isEmpty()) {
+                close();
+            }
+        }
+
+        private synchronized void retire() {
+            retired = true;
+            if (leases.isEmpty()) {
+                close();
+            } else {
+                leases.forEach(l -> log.warn("Leaked SolrClientLease for {} (held by {} for {}ms)",
+                        l.getCoreName(), l.getOwner(), l.getHoldTime(TimeUnit.MILLISECONDS)));
+            }
+        }
+
+        private void close() {
+            try {
+                solrClient.close();
+            } catch (IOException e) {
+                log.warn("Error closing pooled SolrClient for {}: {}", coreName, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Backend-specific deployment of a single core.
+     * @see #deployCores(Collection, int, CoreDeployer)
+     */
+    @FunctionalInterface
+    protected interface CoreDeployer {
+        void deploy(SolrCoreDescriptor coreDescriptor) throws IOException, SolrServerException;
+    }
 }
@@ -15,7 +15,6 @@
  */
 package io.redlink.solrlib;
 
-import io.redlink.utils.PathUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.solr.client.solrj.SolrClient;
 import org.apache.solr.client.solrj.SolrServerException;
@@ -28,6 +27,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Comparator;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Stream;
 
 /**
@@ -47,28 +47,93 @@ public interface SolrCoreDescriptor {
         return getClass().getSimpleName();
     }
 
+    /**
+     * Whether the core is loaded on startup, or on first access. Only supported by the embedded backend.
+     */
+    default boolean isLoadOnStartup() {
+        return true;
+    }
+
+    /**
+     * Whether the core may be unloaded when the cache of transient cores is full.
+     * Only supported by the embedded backend.
+     */
+    default boolean isTransient() {
+        return false;
+    }
+
+    /**
+     * The {@code directoryFactory} to use for the index, e.g. {@code solr.MMapDirectoryFactory},
+     * or {@code null} to keep the one of the {@code solrconfig.xml}. Only supported by the embedded backend.
+     */
+    default String getDirectoryFactory() {
+        return null;
+    }
+
+    /**
+     * The compression of stored fields, or {@code null} to keep the codec of the {@code solrconfig.xml}.
+     * Only supported by the embedded backend.
+     */
+    default StoredFieldsCompression getStoredFieldsCompression() {
+        return null;
+    }
+
+    /**
+     * The amount of memory to buffer updates before they are flushed to the index, a value {@code <= 0}
+     * keeps the setting of the {@code solrconfig.xml}. Only supported by the embedded backend.
+     */
+    default double getRamBufferSizeMB() {
+        return -1;
+    }
+
     void initCoreDirectory(Path coreDir, Path sharedLibDir) throws IOException;
 
+    /**
+     * Provide read-only access to the core-bundle without unpacking it, e.g. to upload the {@code conf}-directory
+     * straight from a zip-file. Descriptors that create the core-directory dynamically keep the default,
+     * callers then fall back to {@link #initCoreDirectory(Path, Path)}.
+     * @param visitor called with the directory containing the {@code core.properties},
+     *                the path is only valid during the call.
+     * @return {@code true} if the visitor was called, {@code false} if the core-bundle is not accessible directly.
+     */
+    default boolean visitCoreBundle(CoreBundleVisitor visitor) throws IOException {
+        return false;
+    }
+
+    /**
+     * Provide a prebuilt index to seed a new core, instead of (re-)indexing the seed-data in
+     * {@link #onCoreCreated(SolrClient)}. Supported by the embedded and the standalone backend, which install the
+     * template into the data-directory of a core that does not have an index yet.
+     * <p>
+     * By default, the {@code data/index} directory of the {@link #visitCoreBundle(CoreBundleVisitor) core-bundle}
+     * is used, if present.
+     * @param visitor called with the directory containing the index-files, the path is only valid during the call.
+     * @return {@code true} if the visitor was called, {@code false} if there is no index-template
+     */
+    default boolean visitIndexTemplate(IndexTemplateVisitor visitor) throws IOException {
+        final AtomicBoolean visited = new AtomicBoolean(false);
+        visitCoreBundle(coreDir -> {
+            final Path indexDir = coreDir.resolve("data").resolve("index");
+            if (Files.isDirectory(indexDir)) {
+                visitor.visit(indexDir);
+                visited.set(true);
+            }
+        });
+        return visited.get();
+    }
+
     default void onCoreCreated(SolrClient solrClient) throws IOException, SolrServerException {}
 
     default void onCoreStarted(SolrClient solrClient) throws IOException, SolrServerException {}
 
-    @SuppressWarnings("squid:S3725")
+    /**
+     * Unpack the core-bundle to the provided core-directory. Unpacking is incremental, files that did not change
+     * since the last time the bundle was unpacked are skipped.
+     * @see CoreBundleManifest#sync(Path, Path)
+     */
     static void unpackSolrCoreDir(Path solrCoreBundle, Path solrCoreDir) throws IOException {
         LoggerFactory.getLogger(SolrCoreDescriptor.class).debug("Unpacking SolrCore directory {} to {}", solrCoreBundle, solrCoreDir);
-        try (Stream<Path> pathStream = Files.find(solrCoreBundle, Integer.MAX_VALUE,
-                (p, a) -> Files.isRegularFile(p)
-                        && Files.isReadable(p)
-                        && "core.properties".equals(String.valueOf(p.getFileName()))
-        )) {
-            final Optional<Path> coreProperties = pathStream.min(Comparator.comparingInt(Path::getNameCount));
-            final Path sourceDir = coreProperties
-                    .orElseThrow(() ->
-                            new IllegalArgumentException("Invalid solrCoreBundle '" + solrCoreBundle + "': no core.properties found"))
-                    .getParent();
-
-            PathUtils.copyRecursive(sourceDir, solrCoreDir);
-        }
+        CoreBundleManifest.sync(findSolrCoreDir(solrCoreBundle), solrCoreDir);
     }
 
     static void unpackSolrCoreZip(Path solrCoreBundle, Path solrHome) throws IOException {
@@ -76,17 +141,77 @@ public interface SolrCoreDescriptor {
     }
 
     static void unpackSolrCoreZip(Path solrCoreBundle, Path solrHome, ClassLoader classLoader) throws IOException {
+        LoggerFactory.getLogger(SolrCoreDescriptor.class).debug("Unpacking SolrCore zip {} to {}", solrCoreBundle, solrHome);
+        visitSolrCoreZip(solrCoreBundle, classLoader, coreDir -> CoreBundleManifest.sync(coreDir, solrHome));
+    }
+
+    /**
+     * Call the visitor with the directory of the core-bundle (directory or zip-file) that contains the
+     * {@code core.properties}, without unpacking the bundle.
+     */
+    static void visitSolrCoreBundle(Path solrCoreBundle, CoreBundleVisitor visitor) throws IOException {
+        if (Files.isDirectory(solrCoreBundle)) {
+            visitor.visit(findSolrCoreDir(solrCoreBundle));
+        } else {
+            visitSolrCoreZip(solrCoreBundle, null, visitor);
+        }
+    }
+
+    static void visitSolrCoreZip(Path solrCoreBundle, ClassLoader classLoader, CoreBundleVisitor visitor) throws IOException {
         final String contentType = Files.probeContentType(solrCoreBundle);
         if ("application/zip".equals(contentType) ||
                 //fallback if Files.probeContentType(..) fails (such as on Max OS X)
                 (contentType == null && StringUtils.endsWithAny(solrCoreBundle.getFileName().toString(), ".zip", ".jar"))) {
-            LoggerFactory.getLogger(SolrCoreDescriptor.class).debug("Unpacking SolrCore zip {} to {}", solrCoreBundle, solrHome);
             try (FileSystem fs = FileSystems.newFileSystem(solrCoreBundle, classLoader)) {
-                unpackSolrCoreDir(fs.getPath("/"), solrHome);
+                visitor.visit(findSolrCoreDir(fs.getPath("/")));
             }
         } else {
             throw new IllegalArgumentException("Packaged solrCoreBundle '" + solrCoreBundle + "' has unsupported type: " + contentType);
         }
     }
 
+    /**
+     * @return the top-most directory within the core-bundle that contains a {@code core.properties}
+     */
+    @SuppressWarnings("squid:S3725")
+    static Path findSolrCoreDir(Path solrCoreBundle) throws IOException {
+        try (Stream<Path> pathStream = Files.find(solrCoreBundle, Integer.MAX_VALUE,
+                (p, a) -> Files.isRegularFile(p)
+                        && Files.isReadable(p)
+                        && "core.properties".equals(String.valueOf(p.getFileName()))
+        )) {
+            final Optional<Path> coreProperties = pathStream.min(Comparator.comparingInt(Path::getNameCount));
+            return coreProperties
+                    .orElseThrow(() ->
+                            new IllegalArgumentException("Invalid solrCoreBundle '" + solrCoreBundle + "': no core.properties found"))
+                    .getParent();
+        }
+    }
+
+    /**
+     * Compression-mode for stored fields, see {@link #getStoredFieldsCompression()}.
+     */
+    enum StoredFieldsCompression {
+        /** Fast compression, for write-heavy cores */
+        BEST_SPEED,
+        /** Higher compression-ratio at the cost of slower (de-)compression, for read-heavy cores */
+        BEST_COMPRESSION
+    }
+
+    /**
+     * Callback for {@link #visitCoreBundle(CoreBundleVisitor)}.
+     */
+    @FunctionalInterface
+    interface CoreBundleVisitor {
+        void visit(Path coreDir) throws IOException;
+    }
+
+    /**
+     * Callback for {@link #visitIndexTemplate(IndexTemplateVisitor)}.
+     */
+    @FunctionalInterface
+    interface IndexTemplateVisitor {
+        void visit(Path indexDir) throws IOException;
+    }
+
 }
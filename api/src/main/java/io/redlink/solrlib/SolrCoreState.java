@@ -0,0 +1,87 @@
+/*
+ * Copyright 2017 redlink GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.redlink.solrlib;
+
+/**
+ * Lifecycle-state of a core managed by a {@link SolrCoreContainer}.
+ * <pre>
+ * DEPLOYING --&gt; CREATED --&gt; STARTING --&gt; READY
+ *
+ * DEPLOYING | CREATED | STARTING | READY --&gt; FAILED
+ * (all others) --&gt; CLOSING
+ * </pre>
+ */
+public enum SolrCoreState {
+    /**
+     * The core is registered and waiting for (or in) deployment to the Solr backend.
+     */
+    DEPLOYING,
+    /**
+     * The core is deployed, the core-init callbacks are scheduled.
+     */
+    CREATED,
+    /**
+     * The core-init callbacks are running.
+     */
+    STARTING,
+    /**
+     * The core is initialized and ready to serve requests.
+     */
+    READY,
+    /**
+     * Deployment or initialisation of the core failed.
+     */
+    FAILED,
+    /**
+     * The core is shutting down.
+     */
+    CLOSING;
+
+    /**
+     * @return {@code true} if a transition from this state to the provided state is valid.
+     */
+    public boolean canTransitionTo(SolrCoreState target) {
+        switch (this) {
+            case DEPLOYING:
+                return target == CREATED || target == FAILED || target == CLOSING;
+            case CREATED:
+                return target == STARTING || target == FAILED || target == CLOSING;
+            case STARTING:
+                return target == READY || target == FAILED || target == CLOSING;
+            case READY:
+                return target == FAILED || target == CLOSING;
+            case FAILED:
+                return target == CLOSING;
+            case CLOSING:
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @return {@code true} if the core will not change its state without external interaction.
+     */
+    public boolean isSettled() {
+        return this == READY || this == FAILED || this == CLOSING;
+    }
+
+    /**
+     * @return {@code true} if the core is deployed to the Solr backend.
+     */
+    public boolean isAvailable() {
+        return this == CREATED || this == STARTING || this == READY;
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2017 redlink GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.redlink.solrlib;
+
+import io.redlink.utils.PathUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ */
+public class CoreBundleManifestTest {
+
+    private Path source, target;
+
+    @Before
+    public void setUp() throws IOException {
+        source = Files.createTempDirectory("bundle");
+        target = Files.createTempDirectory("core");
+        write(source.resolve("core.properties"), "");
+        write(source.resolve("conf/solrconfig.xml"), "<config/>");
+        write(source.resolve("conf/schema.xml"), "<schema/>");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        PathUtils.deleteRecursive(source);
+        PathUtils.deleteRecursive(target);
+    }
+
+    @Test
+    public void testSync() throws IOException {
+        assertTrue(CoreBundleManifest.sync(source, target));
+        assertEquals("<config/>", read(target.resolve("conf/solrconfig.xml")));
+        final CoreBundleManifest manifest = CoreBundleManifest.read(target);
+        assertEquals(3, manifest.getFiles().size());
+        assertTrue(manifest.getFiles().contains("conf/schema.xml"));
+
+        // unchanged, even if the timestamp changes
+        Files.setLastModifiedTime(source.resolve("conf/schema.xml"), FileTime.fromMillis(0));
+        assertFalse(CoreBundleManifest.sync(source, target));
+        assertEquals(manifest.getFingerprint(), CoreBundleManifest.read(target).getFingerprint());
+
+        // data is never touched
+        write(target.resolve("data/index/segments_1"), "index");
+        write(source.resolve("data/foo"), "bar");
+        // changed and removed files
+        write(source.resolve("conf/solrconfig.xml"), "<config><changed/></config>");
+        Files.delete(source.resolve("conf/schema.xml"));
+        write(source.resolve("conf/lang/stopwords.txt"), "a");
+
+        assertTrue(CoreBundleManifest.sync(source, target));
+        assertEquals("<config><changed/></config>", read(target.resolve("conf/solrconfig.xml")));
+        assertFalse(Files.exists(target.resolve("conf/schema.xml")));
+        assertTrue(Files.exists(target.resolve("conf/lang/stopwords.txt")));
+        assertEquals("index", read(target.resolve("data/index/segments_1")));
+        assertFalse(Files.exists(target.resolve("data/foo")));
+        assertNotEquals(manifest.getFingerprint(), CoreBundleManifest.read(target).getFingerprint());
+
+        // removing the only file of a directory removes the directory
+        Files.delete(source.resolve("conf/lang/stopwords.txt"));
+        assertTrue(CoreBundleManifest.sync(source, target));
+        assertFalse(Files.exists(target.resolve("conf/lang")));
+    }
+
+    @Test
+    public void testSyncResetsModifiedTarget() throws IOException {
+        assertTrue(CoreBundleManifest.sync(source, target));
+        final CoreBundleManifest manifest = CoreBundleManifest.read(target);
+
+        // touched, but not modified
+        Files.setLastModifiedTime(target.resolve("conf/schema.xml"), FileTime.fromMillis(0));
+        assertFalse(CoreBundleManifest.sync(source, target));
+
+        // e.g. changed via the Schema API
+        write(target.resolve("conf/schema.xml"), "<schema><field/></schema>");
+        assertTrue(CoreBundleManifest.sync(source, target));
+        assertEquals("<schema/>", read(target.resolve("conf/schema.xml")));
+        assertEquals(manifest.getFingerprint(), CoreBundleManifest.read(target).getFingerprint());
+        assertFalse(manifest.isSameDeployment(CoreBundleManifest.read(target)));
+
+        final CoreBundleManifest synced = CoreBundleManifest.read(target);
+        assertFalse(CoreBundleManifest.sync(source, target));
+        assertTrue(synced.isSameDeployment(CoreBundleManifest.read(target)));
+
+        assertTrue(CoreBundleManifest.delete(target));
+        assertTrue(CoreBundleManifest.read(target).isEmpty());
+    }
+
+    @Test
+    public void testInvalidManifest() throws IOException {
+        assertTrue(CoreBundleManifest.sync(source, target));
+        write(target.resolve("conf/schema.xml"), "<schema><field/></schema>");
+        // an entry without the target-stats is invalid
+        write(target.resolve(CoreBundleManifest.MANIFEST_FILE), "conf/schema.xml=abc,9,0\n");
+        assertTrue(CoreBundleManifest.read(target).isEmpty());
+
+        // triggers a full sync
+        assertTrue(CoreBundleManifest.sync(source, target));
+        assertEquals("<schema/>", read(target.resolve("conf/schema.xml")));
+        assertEquals(3, CoreBundleManifest.read(target).getFiles().size());
+    }
+
+    @Test
+    public void testReadMissing() throws IOException {
+        assertTrue(CoreBundleManifest.read(target).isEmpty());
+    }
+
+    private static void write(Path file, String content) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String read(Path file) throws IOException {
+        return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+    }
+}
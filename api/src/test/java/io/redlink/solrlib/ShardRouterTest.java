@@ -0,0 +1,105 @@
+/*
+ * Copyright 2017 redlink GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.redlink.solrlib;
+
+import org.apache.solr.client.solrj.request.UpdateRequest;
+import org.apache.solr.common.SolrInputDocument;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ */
+public class ShardRouterTest {
+
+    @Test
+    public void testShardNames() {
+        final ShardRouter router = new ShardRouter(3);
+        assertEquals(Arrays.asList("foo_shard1", "foo_shard2", "foo_shard3"), router.getShardNames("foo"));
+        assertEquals("foo_shard2", ShardRouter.getShardName("foo", 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidNumShards() {
+        new ShardRouter(0);
+    }
+
+    @Test
+    public void testGetShard() {
+        final ShardRouter router = new ShardRouter(4);
+        final int[] counts = new int[4];
+        for (int i = 0; i < 1000; i++) {
+            final int shard = router.getShard(String.valueOf(i));
+            assertEquals("stable", shard, router.getShard(String.valueOf(i)));
+            counts[shard]++;
+        }
+        for (int count : counts) {
+            assertTrue("balanced: " + Arrays.toString(counts), count > 150);
+        }
+        assertEquals(0, new ShardRouter(1).getShard("foo"));
+    }
+
+    @Test
+    public void testRoute() {
+        final ShardRouter router = new ShardRouter(2);
+        final UpdateRequest request = new UpdateRequest();
+        for (int i = 0; i < 10; i++) {
+            final SolrInputDocument doc = new SolrInputDocument();
+            doc.addField("id", String.valueOf(i));
+            request.add(doc);
+        }
+        request.deleteById("42");
+
+        final List<UpdateRequest> shardRequests = router.route(request, "id");
+        assertEquals(2, shardRequests.size());
+        int numDocs = 0;
+        for (int shard = 0; shard < 2; shard++) {
+            for (SolrInputDocument doc : shardRequests.get(shard).getDocuments()) {
+                assertEquals(shard, router.getShard((String) doc.getFieldValue("id")));
+                numDocs++;
+            }
+        }
+        assertEquals(10, numDocs);
+        assertEquals(Arrays.asList("42"), shardRequests.get(router.getShard("42")).getDeleteById());
+
+        // deletes by query and parameters are sent to every shard
+        final UpdateRequest deleteByQuery = new UpdateRequest();
+        deleteByQuery.deleteByQuery("*:*");
+        deleteByQuery.setParam("commit", "true");
+        for (UpdateRequest shardRequest : router.route(deleteByQuery, "id")) {
+            assertEquals(Arrays.asList("*:*"), shardRequest.getDeleteQuery());
+            assertEquals("true", shardRequest.getParams().get("commit"));
+        }
+
+        // nothing to send
+        final UpdateRequest single = new UpdateRequest();
+        single.deleteById("42");
+        assertNull(router.route(single, "id").get(1 - router.getShard("42")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRouteWithoutUniqueKey() {
+        final UpdateRequest request = new UpdateRequest();
+        request.add(new SolrInputDocument());
+        new ShardRouter(2).route(request, "id");
+    }
+}
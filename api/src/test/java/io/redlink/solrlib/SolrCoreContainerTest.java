@@ -17,16 +17,42 @@
 package io.redlink.solrlib;
 
 import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.Utils;
+import org.hamcrest.Matchers;
 import org.junit.Assert;
 import org.junit.Test;
 import org.mockito.Mockito;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  */
@@ -74,7 +100,6 @@ public class SolrCoreContainerTest {
                         Thread.sleep(500);
                         scheduleCoreInit(executorService, coreDescriptor, true);
                         Thread.sleep(500);
-                        availableCores.put(coreDescriptor.getCoreName(), coreDescriptor);
                     }
                 } catch (InterruptedException e) {
                     Thread.currentThread().interrupt();
@@ -130,4 +155,504 @@ public class SolrCoreContainerTest {
         assertNotNull(coreContainer.createSolrClient(""));
 
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testSolrClientLease() throws Exception {
+        final SolrCoreDescriptor coreDescriptor = Mockito.mock(SolrCoreDescriptor.class);
+        Mockito.when(coreDescriptor.getCoreName()).thenReturn("mock");
+        final AtomicInteger clientsCreated = new AtomicInteger(0);
+        final SolrCoreContainer coreContainer = new SolrCoreContainer(Collections.singleton(coreDescriptor), null) {
+            @Override
+            protected void init(ExecutorService executorService) {
+                for (SolrCoreDescriptor coreDescriptor : coreDescriptors) {
+                    scheduleCoreInit(executorService, coreDescriptor, false);
+                }
+            }
+
+            @Override
+            protected SolrClient createSolrClient(String coreName) {
+                clientsCreated.incrementAndGet();
+                return Mockito.mock(SolrClient.class);
+            }
+        };
+        coreContainer.initialize();
+
+        final SolrClientLease lease1 = coreContainer.getSolrClientLease("mock");
+        final SolrClient solrClient = lease1.getSolrClient();
+        try (SolrClientLease lease2 = coreContainer.getSolrClientLease(coreDescriptor)) {
+            assertSame(lease1.getSolrClient(), lease2.getSolrClient());
+            assertEquals(2, coreContainer.getActiveLeases().size());
+            assertEquals(0, coreContainer.checkLongHeldLeases(1, TimeUnit.HOURS).size());
+        }
+        assertEquals(1, coreContainer.getActiveLeases().size());
+        // one for the core-init callbacks, one for the pool
+        assertEquals(2, clientsCreated.get());
+
+        // lease1 is still held: the pooled client must not be closed
+        coreContainer.shutdown();
+        Mockito.verify(solrClient, Mockito.never()).close();
+
+        lease1.close();
+        lease1.close();
+        assertTrue(lease1.isReleased());
+        Mockito.verify(solrClient, Mockito.times(1)).close();
+    }
+
+    @Test
+    public void testGetSolrClientAsync() throws Exception {
+        final SolrCoreDescriptor coreDescriptor = Mockito.mock(SolrCoreDescriptor.class);
+        Mockito.when(coreDescriptor.getCoreName()).thenReturn("mock");
+        final SolrCoreDescriptor failingDescriptor = Mockito.mock(SolrCoreDescriptor.class);
+        Mockito.when(failingDescriptor.getCoreName()).thenReturn("failing");
+        Mockito.doThrow(new IOException("expected")).when(failingDescriptor).onCoreStarted(Mockito.any());
+
+        final CountDownLatch initLatch = new CountDownLatch(1);
+        final SolrCoreContainer coreContainer = new SolrCoreContainer(new HashSet<>(Arrays.asList(coreDescriptor, failingDescriptor)), null) {
+            @Override
+            protected void init(ExecutorService executorService) throws IOException {
+                try {
+                    initLatch.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(e);
+                }
+                for (SolrCoreDescriptor coreDescriptor : coreDescriptors) {
+                    scheduleCoreInit(executorService, coreDescriptor, false);
+                }
+            }
+
+            @Override
+            protected SolrClient createSolrClient(String coreName) {
+                return Mockito.mock(SolrClient.class);
+            }
+        };
+        coreContainer.initialize();
+
+        final CompletableFuture<SolrClient> future = coreContainer.getSolrClientAsync(coreDescriptor);
+        final CompletableFuture<SolrClient> failing = coreContainer.getSolrClientAsync("failing");
+        assertFalse(future.isDone());
+        try {
+            coreContainer.getSolrClient("mock", 100, TimeUnit.MILLISECONDS);
+            fail("core must not be ready before init completed");
+        } catch (TimeoutException ignore) {
+        }
+
+        initLatch.countDown();
+        assertNotNull(future.get(5, TimeUnit.SECONDS));
+        assertNotNull(coreContainer.getSolrClient("mock", 5, TimeUnit.SECONDS));
+        try {
+            failing.get(5, TimeUnit.SECONDS);
+            fail("core-init exception must be propagated");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), Matchers.instanceOf(SolrServerException.class));
+        }
+        try {
+            coreContainer.getSolrClient("failing", 5, TimeUnit.SECONDS);
+            fail("core-init exception must be propagated");
+        } catch (SolrServerException e) {
+            assertThat(e.getCause(), Matchers.instanceOf(IOException.class));
+        }
+        try {
+            coreContainer.getSolrClient("unknown", 5, TimeUnit.SECONDS);
+            fail("unknown core");
+        } catch (IllegalArgumentException ignore) {
+        }
+    }
+
+    @Test
+    public void testParallelDeployCores() throws Exception {
+        final List<SolrCoreDescriptor> descriptors = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            final SolrCoreDescriptor coreDescriptor = Mockito.mock(SolrCoreDescriptor.class);
+            Mockito.when(coreDescriptor.getCoreName()).thenReturn("core" + i);
+            descriptors.add(coreDescriptor);
+        }
+        // name-clash
+        final SolrCoreDescriptor clash = Mockito.mock(SolrCoreDescriptor.class);
+        Mockito.when(clash.getCoreName()).thenReturn("core0");
+        descriptors.add(clash);
+
+        final Set<String> deployThreads = ConcurrentHashMap.newKeySet();
+        final CountDownLatch concurrent = new CountDownLatch(2);
+        final SolrCoreContainer coreContainer = new SolrCoreContainer(new LinkedHashSet<>(descriptors), null) {
+            @Override
+            protected void init(ExecutorService executorService) throws IOException {
+                deployCores(coreDescriptors, 4, coreDescriptor -> {
+                    deployThreads.add(Thread.currentThread().getName());
+                    concurrent.countDown();
+                    try {
+                        concurrent.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    coreDescriptor.initCoreDirectory(null, null);
+                    if ("core3".equals(coreDescriptor.getCoreName())) {
+                        throw new IOException("expected");
+                    }
+                    scheduleCoreInit(executorService, coreDescriptor, true);
+                });
+            }
+
+            @Override
+            protected SolrClient createSolrClient(String coreName) {
+                return Mockito.mock(SolrClient.class);
+            }
+        };
+        coreContainer.initialize();
+        coreContainer.awaitInitCompletion();
+
+        assertThat(deployThreads.size(), Matchers.greaterThan(1));
+        Mockito.verify(clash, Mockito.never()).initCoreDirectory(Mockito.any(), Mockito.any());
+        for (SolrCoreDescriptor coreDescriptor : descriptors.subList(0, 8)) {
+            Mockito.verify(coreDescriptor, Mockito.times(1)).initCoreDirectory(null, null);
+            if ("core3".equals(coreDescriptor.getCoreName())) {
+                assertFalse(coreContainer.isCoreAvailable(coreDescriptor));
+                try {
+                    coreContainer.getSolrClient(coreDescriptor);
+                    fail("deploy exception must be propagated");
+                } catch (SolrServerException e) {
+                    assertThat(e.getCause(), Matchers.instanceOf(IOException.class));
+                }
+            } else {
+                assertTrue(coreContainer.isCoreAvailable(coreDescriptor));
+                assertNotNull(coreContainer.getSolrClient(coreDescriptor));
+            }
+        }
+    }
+
+    @Test
+    public void testProgressiveAvailability() throws Exception {
+        final SolrCoreDescriptor fast = Mockito.mock(SolrCoreDescriptor.class);
+        Mockito.when(fast.getCoreName()).thenReturn("fast");
+        final SolrCoreDescriptor slow = Mockito.mock(SolrCoreDescriptor.class);
+        Mockito.when(slow.getCoreName()).thenReturn("slow");
+
+        final CountDownLatch slowDeploy = new CountDownLatch(1);
+        final SolrCoreContainer coreContainer = new SolrCoreContainer(new LinkedHashSet<>(Arrays.asList(fast, slow)), null) {
+            @Override
+            protected void init(ExecutorService executorService) throws IOException {
+                scheduleCoreInit(executorService, fast, true);
+                try {
+                    slowDeploy.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(e);
+                }
+                scheduleCoreInit(executorService, slow, true);
+            }
+
+            @Override
+            protected SolrClient createSolrClient(String coreName) {
+                return Mockito.mock(SolrClient.class);
+            }
+        };
+        coreContainer.initialize();
+
+        assertNotNull(coreContainer.getSolrClient("fast", 5, TimeUnit.SECONDS));
+        assertTrue(coreContainer.isCoreReady(fast));
+        assertFalse(coreContainer.isCoreReady(slow));
+        assertFalse(coreContainer.isStartupComplete());
+
+        slowDeploy.countDown();
+        assertNotNull(coreContainer.getSolrClient("slow", 5, TimeUnit.SECONDS));
+        assertTrue(coreContainer.isCoreReady(slow));
+        coreContainer.awaitInitCompletion();
+        assertTrue(coreContainer.isStartupComplete());
+    }
+
+    @Test
+    public void testCoreStateTransitions() throws Exception {
+        final SolrCoreDescriptor coreDescriptor = Mockito.mock(SolrCoreDescriptor.class);
+        Mockito.when(coreDescriptor.getCoreName()).thenReturn("mock");
+        final SolrCoreDescriptor failingDescriptor = Mockito.mock(SolrCoreDescriptor.class);
+        Mockito.when(failingDescriptor.getCoreName()).thenReturn("failing");
+        Mockito.doThrow(new IOException("expected")).when(failingDescriptor).onCoreStarted(Mockito.any());
+        final SolrCoreDescriptor missingDescriptor = Mockito.mock(SolrCoreDescriptor.class);
+        Mockito.when(missingDescriptor.getCoreName()).thenReturn("missing");
+
+        final CountDownLatch initLatch = new CountDownLatch(1);
+        final SolrCoreContainer coreContainer = new SolrCoreContainer(
+                new LinkedHashSet<>(Arrays.asList(coreDescriptor, failingDescriptor, missingDescriptor)), null) {
+            @Override
+            protected void init(ExecutorService executorService) throws IOException {
+                try {
+                    initLatch.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(e);
+                }
+                scheduleCoreInit(executorService, coreDescriptor, false);
+                scheduleCoreInit(executorService, failingDescriptor, false);
+            }
+
+            @Override
+            protected SolrClient createSolrClient(String coreName) {
+                return Mockito.mock(SolrClient.class);
+            }
+        };
+        final List<String> transitions = Collections.synchronizedList(new ArrayList<>());
+        coreContainer.addCoreStateListener((coreName, from, to) -> {
+            if ("mock".equals(coreName)) {
+                transitions.add(from + "->" + to);
+            }
+        });
+
+        assertEquals(SolrCoreState.DEPLOYING, coreContainer.getCoreState("mock"));
+        assertNull(coreContainer.getCoreState("unknown"));
+        assertEquals(-1, coreContainer.getCoreStateTimestamp("mock", SolrCoreState.READY));
+
+        coreContainer.initialize();
+        initLatch.countDown();
+        coreContainer.awaitInitCompletion();
+        coreContainer.awaitCoreInitCompletion("mock");
+        coreContainer.awaitCoreInitCompletion("failing");
+
+        assertEquals(SolrCoreState.READY, coreContainer.getCoreState("mock"));
+        assertEquals(SolrCoreState.FAILED, coreContainer.getCoreState("failing"));
+        assertEquals(SolrCoreState.FAILED, coreContainer.getCoreState("missing"));
+        assertEquals(Arrays.asList("DEPLOYING->CREATED", "CREATED->STARTING", "STARTING->READY"), transitions);
+        assertThat(coreContainer.getCoreStateTimestamp("mock", SolrCoreState.READY),
+                Matchers.greaterThanOrEqualTo(coreContainer.getCoreStateTimestamp("mock", SolrCoreState.DEPLOYING)));
+        assertTrue(coreContainer.isStartupComplete());
+        try {
+            coreContainer.getSolrClient(missingDescriptor);
+            fail("missing core must not be available");
+        } catch (SolrServerException e) {
+            assertThat(e.getCause(), Matchers.instanceOf(IllegalStateException.class));
+        }
+
+        coreContainer.shutdown();
+        assertEquals(SolrCoreState.CLOSING, coreContainer.getCoreState("mock"));
+        assertEquals("READY->CLOSING", transitions.get(transitions.size() - 1));
+        assertFalse(coreContainer.isCoreAvailable("mock"));
+    }
+
+    @Test
+    public void testRegisterCore() throws Exception {
+        final SolrCoreDescriptor coreDescriptor = Mockito.mock(SolrCoreDescriptor.class);
+        Mockito.when(coreDescriptor.getCoreName()).thenReturn("mock");
+        final SolrCoreDescriptor tenant = Mockito.mock(SolrCoreDescriptor.class);
+        Mockito.when(tenant.getCoreName()).thenReturn("tenant");
+
+        final Set<String> deployed = ConcurrentHashMap.newKeySet();
+        final AtomicInteger deployments = new AtomicInteger(0);
+        final SolrCoreContainer coreContainer = new SolrCoreContainer(Collections.singleton(coreDescriptor), null) {
+            @Override
+            protected void init(ExecutorService executorService) throws IOException {
+                deployCores(coreDescriptors, 1, coreDescriptor -> doRegisterCore(coreDescriptor, executorService));
+            }
+
+            @Override
+            protected void doRegisterCore(SolrCoreDescriptor coreDescriptor, ExecutorService executorService) {
+                deployments.incrementAndGet();
+                deployed.add(coreDescriptor.getCoreName());
+                scheduleCoreInit(executorService, coreDescriptor, true);
+            }
+
+            @Override
+            protected void doUnregisterCore(String coreName) {
+                deployed.remove(coreName);
+            }
+
+            @Override
+            protected SolrClient createSolrClient(String coreName) {
+                return Mockito.mock(SolrClient.class);
+            }
+        };
+
+        try {
+            coreContainer.registerCore(tenant);
+            fail("registerCore requires an initialized container");
+        } catch (IllegalStateException ignore) {
+        }
+
+        coreContainer.initialize();
+        coreContainer.registerCore(tenant);
+        assertNotNull(coreContainer.getSolrClient("tenant", 5, TimeUnit.SECONDS));
+        Mockito.verify(tenant, Mockito.times(1)).onCoreCreated(Mockito.any());
+        assertEquals(2, deployments.get());
+        try {
+            coreContainer.registerCore(tenant);
+            fail("core already registered");
+        } catch (IllegalStateException ignore) {
+        }
+
+        coreContainer.unregisterCore("tenant");
+        assertNull(coreContainer.getCoreState("tenant"));
+        assertEquals(Collections.singleton("mock"), deployed);
+        assertNotNull(coreContainer.getSolrClient("mock", 5, TimeUnit.SECONDS));
+        try {
+            coreContainer.unregisterCore("tenant");
+            fail("unknown core");
+        } catch (IllegalArgumentException ignore) {
+        }
+
+        // register again
+        coreContainer.registerCore(tenant);
+        assertNotNull(coreContainer.getSolrClient("tenant", 5, TimeUnit.SECONDS));
+        assertEquals(3, deployments.get());
+        coreContainer.shutdown();
+    }
+
+    @Test
+    public void testRegisteredCoreDescriptors() throws Exception {
+        final SolrCoreDescriptor coreDescriptor = Mockito.mock(SolrCoreDescriptor.class);
+        Mockito.when(coreDescriptor.getCoreName()).thenReturn("mock");
+        final SolrCoreDescriptor tenant = Mockito.mock(SolrCoreDescriptor.class);
+        Mockito.when(tenant.getCoreName()).thenReturn("tenant");
+        final SolrCoreDescriptor other = Mockito.mock(SolrCoreDescriptor.class);
+        Mockito.when(other.getCoreName()).thenReturn("other");
+
+        final Set<String> deployed = ConcurrentHashMap.newKeySet();
+        final SolrCoreContainer coreContainer = createRegistryContainer(Collections.singleton(coreDescriptor), deployed);
+        coreContainer.initialize();
+        coreContainer.registerCore(tenant);
+        coreContainer.registerCore(other);
+        assertEquals(new HashSet<>(Arrays.asList(coreDescriptor, tenant, other)), coreContainer.getCoreDescriptors());
+        coreContainer.unregisterCore("tenant");
+        assertEquals(new HashSet<>(Arrays.asList(coreDescriptor, other)), coreContainer.getCoreDescriptors());
+        coreContainer.shutdown();
+
+        // re-init with the current cores
+        final Set<String> redeployed = ConcurrentHashMap.newKeySet();
+        final SolrCoreContainer reinitialized = createRegistryContainer(coreContainer.getCoreDescriptors(), redeployed);
+        reinitialized.initialize();
+        assertNotNull(reinitialized.getSolrClient("other", 5, TimeUnit.SECONDS));
+        assertEquals(new HashSet<>(Arrays.asList("mock", "other")), redeployed);
+        assertNull(reinitialized.getCoreState("tenant"));
+        reinitialized.shutdown();
+    }
+
+    private static SolrCoreContainer createRegistryContainer(Set<SolrCoreDescriptor> coreDescriptors, Set<String> deployed) {
+        return new SolrCoreContainer(coreDescriptors, null) {
+            @Override
+            protected void init(ExecutorService executorService) throws IOException {
+                deployCores(this.coreDescriptors, 1, coreDescriptor -> doRegisterCore(coreDescriptor, executorService));
+            }
+
+            @Override
+            protected void doRegisterCore(SolrCoreDescriptor coreDescriptor, ExecutorService executorService) {
+                deployed.add(coreDescriptor.getCoreName());
+                scheduleCoreInit(executorService, coreDescriptor, true);
+            }
+
+            @Override
+            protected void doUnregisterCore(String coreName) {
+                deployed.remove(coreName);
+            }
+
+            @Override
+            protected SolrClient createSolrClient(String coreName) {
+                return Mockito.mock(SolrClient.class);
+            }
+        };
+    }
+
+    @Test
+    public void testDeferredCoreInit() throws Exception {
+        final SolrCoreDescriptor coreDescriptor = Mockito.mock(SolrCoreDescriptor.class);
+        Mockito.when(coreDescriptor.getCoreName()).thenReturn("lazy");
+
+        final AtomicInteger loaded = new AtomicInteger(0);
+        final SolrCoreContainer coreContainer = new SolrCoreContainer(Collections.singleton(coreDescriptor), null) {
+            @Override
+            protected void init(ExecutorService executorService) {
+                deferCoreInit(executorService, coreDescriptor, () -> {
+                    loaded.incrementAndGet();
+                    return false;
+                });
+            }
+
+            @Override
+            protected SolrClient createSolrClient(String coreName) {
+                return Mockito.mock(SolrClient.class);
+            }
+        };
+        coreContainer.initialize();
+        coreContainer.awaitInitCompletion();
+
+        assertTrue(coreContainer.isStartupComplete());
+        assertTrue(coreContainer.isCoreAvailable("lazy"));
+        assertFalse(coreContainer.isCoreReady("lazy"));
+        assertTrue(coreContainer.isCoreInitDeferred("lazy"));
+        assertEquals(0, loaded.get());
+        Mockito.verify(coreDescriptor, Mockito.never()).onCoreStarted(Mockito.any());
+
+        assertNotNull(coreContainer.getSolrClient("lazy", 5, TimeUnit.SECONDS));
+        assertNotNull(coreContainer.getSolrClient("lazy"));
+        assertTrue(coreContainer.isCoreReady("lazy"));
+        assertFalse(coreContainer.isCoreInitDeferred("lazy"));
+        assertEquals(1, loaded.get());
+        Mockito.verify(coreDescriptor, Mockito.never()).onCoreCreated(Mockito.any());
+        Mockito.verify(coreDescriptor, Mockito.times(1)).onCoreStarted(Mockito.any());
+    }
+
+    @Test
+    public void testBulkLoad() throws Exception {
+        final SolrCoreDescriptor coreDescriptor = Mockito.mock(SolrCoreDescriptor.class);
+        Mockito.when(coreDescriptor.getCoreName()).thenReturn("bulk");
+
+        final List<String> configCommands = new ArrayList<>();
+        final SolrClient solrClient = Mockito.mock(SolrClient.class);
+        Mockito.when(solrClient.request(Mockito.any(), Mockito.isNull())).thenAnswer(invocation -> {
+            final SolrRequest<?> request = invocation.getArgument(0);
+            final NamedList<Object> response = new NamedList<>();
+            if ("/config/overlay".equals(request.getPath())) {
+                // openSearcher is already set in the overlay
+                response.add("overlay", Collections.singletonMap("props",
+                        Collections.singletonMap("updateHandler", Collections.singletonMap("autoCommit",
+                                Collections.singletonMap("openSearcher", true)))));
+            } else if ("/config".equals(request.getPath())) {
+                final ByteArrayOutputStream out = new ByteArrayOutputStream();
+                request.getContentWriter("application/json").write(out);
+                configCommands.add(out.toString("UTF-8"));
+            }
+            return response;
+        });
+
+        final SolrCoreContainer coreContainer = new SolrCoreContainer(Collections.singleton(coreDescriptor), null) {
+            @Override
+            protected void init(ExecutorService executorService) {
+                scheduleCoreInit(executorService, coreDescriptor, false);
+            }
+
+            @Override
+            protected SolrClient createSolrClient(String coreName) {
+                return solrClient;
+            }
+        };
+        coreContainer.initialize();
+
+        coreContainer.beginBulkLoad("bulk");
+        assertTrue(coreContainer.isBulkLoading("bulk"));
+        assertEquals(1, configCommands.size());
+        final Map<?, ?> bulkSettings = (Map<?, ?>) ((Map<?, ?>) Utils.fromJSONString(configCommands.get(0))).get("set-property");
+        assertEquals(false, bulkSettings.get("updateHandler.autoCommit.openSearcher"));
+        assertEquals(-1L, bulkSettings.get("updateHandler.autoSoftCommit.maxTime"));
+        try {
+            coreContainer.beginBulkLoad("bulk");
+            fail("bulk-load already started");
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), Matchers.containsString("already in bulk-load mode"));
+        }
+
+        coreContainer.endBulkLoad("bulk", true);
+        assertFalse(coreContainer.isBulkLoading("bulk"));
+        Mockito.verify(solrClient).commit();
+        Mockito.verify(solrClient).optimize(true, true, 1);
+        assertEquals(2, configCommands.size());
+        // the previous overlay is restored
+        assertThat(configCommands.get(1), Matchers.containsString("\"unset-property\":\"updateHandler.autoSoftCommit.maxTime\""));
+        assertThat(configCommands.get(1), Matchers.containsString("\"unset-property\":\"updateHandler.autoSoftCommit.maxDocs\""));
+        assertThat(configCommands.get(1), Matchers.not(Matchers.containsString("\"unset-property\":\"updateHandler.autoCommit.openSearcher\"")));
+        assertEquals(true, ((Map<?, ?>) ((Map<?, ?>) Utils.fromJSONString(configCommands.get(1))).get("set-property"))
+                .get("updateHandler.autoCommit.openSearcher"));
+        try {
+            coreContainer.endBulkLoad("bulk", false);
+            fail("bulk-load already finished");
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), Matchers.containsString("not in bulk-load mode"));
+        }
+        coreContainer.shutdown();
+    }
+}
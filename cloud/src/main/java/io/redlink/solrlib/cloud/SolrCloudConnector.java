@@ -15,6 +15,8 @@
  */
 package io.redlink.solrlib.cloud;
 
+import io.redlink.solrlib.CollectionSolrClient;
+import io.redlink.solrlib.CoreBundleManifest;
 import io.redlink.solrlib.SolrCoreContainer;
 import io.redlink.solrlib.SolrCoreDescriptor;
 import io.redlink.utils.PathUtils;
@@ -24,23 +26,70 @@ import org.apache.solr.client.solrj.SolrServerException;
 import org.apache.solr.client.solrj.impl.CloudSolrClient;
 import org.apache.solr.client.solrj.impl.ZkClientClusterStateProvider;
 import org.apache.solr.client.solrj.request.CollectionAdminRequest;
+import org.apache.solr.client.solrj.request.ConfigSetAdminRequest;
+import org.apache.solr.client.solrj.response.RequestStatusState;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.cloud.CollectionStateWatcher;
+import org.apache.solr.common.cloud.DocCollection;
+import org.apache.solr.common.cloud.Replica;
+import org.apache.solr.common.cloud.Slice;
+import org.apache.solr.common.cloud.SolrZkClient;
+import org.apache.solr.common.cloud.ZkConfigManager;
+import org.apache.solr.common.cloud.ZkStateReader;
 import org.apache.solr.common.util.NamedList;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.data.Stat;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  */
 public class SolrCloudConnector extends SolrCoreContainer {
 
+    /**
+     * ZooKeeper node (outside of the configs) storing the fingerprint of each uploaded config, together with
+     * the version of the config in ZooKeeper, see {@link #getConfigVersion(SolrZkClient, String)}
+     */
+    static final String CONFIG_FINGERPRINT_ZKNODE = "/solrlib/configs";
+
+    private static final long MIN_POLL_INTERVAL = 100;
+    private static final long MAX_POLL_INTERVAL = 2000;
+
     private final SolrCloudConnectorConfiguration config;
     private final String prefix;
+    private volatile CloudSolrClient sharedClient = null;
+    private final Map<String, Long> activationTimes = new ConcurrentHashMap<>();
 
     public SolrCloudConnector(Set<SolrCoreDescriptor> coreDescriptors, SolrCloudConnectorConfiguration configuration) {
         this(coreDescriptors, configuration, null);
@@ -56,70 +105,20 @@ public class SolrCloudConnector extends SolrCoreContainer {
     @Override
     @SuppressWarnings({"squid:S1141", "squid:S3776"})
     protected void init(ExecutorService executorService) throws IOException, SolrServerException {
+        if (sharedClient != null) {
+            throw new IllegalStateException("Already initialized!");
+        }
         final Path sharedLibs = Files.createTempDirectory("solrSharedLibs");
-        try (CloudSolrClient client = createSolrClient()) {
-            /* NOTE: do not use as this breaks compatibility with lower Solr Versions
-             * <code>final List<String> existingCollections = CollectionAdminRequest.listCollections(client);</code>
-             */
-            @SuppressWarnings("unchecked")
-            final List<String> existingCollections =  (List<String>)new CollectionAdminRequest.List()
-                    .process(client).getResponse().get("collections");
-
-            for (SolrCoreDescriptor coreDescriptor : coreDescriptors) {
-                final String coreName = coreDescriptor.getCoreName();
-                final String remoteName = createRemoteName(coreName);
-                if (availableCores.containsKey(coreName)) {
-                    log.warn("CoreName-Clash: {} already initialized. Skipping {}", coreName, coreDescriptor.getClass());
-                    continue;
-                } else {
-                    log.info("Initializing Core {} (remote: {})", coreName, remoteName);
-                }
+        final CloudSolrClient client = createSolrClient();
+        sharedClient = client;
+        try {
+            final List<String> existingCollections = listCollections(client);
 
-                if (config.isDeployCores()) {
-                    final Path tmp = Files.createTempDirectory(coreName);
-                    try {
-                        coreDescriptor.initCoreDirectory(tmp, sharedLibs);
-                        uploadConfig(remoteName, tmp);
-
-                        if (!existingCollections.contains(remoteName)) {
-                            // TODO: Check and log the response
-                            final NamedList<Object> response = client.request(CollectionAdminRequest
-                                            .createCollection(remoteName, remoteName,
-                                                    Math.max(1, coreDescriptor.getNumShards()),
-                                                    Math.max(2, coreDescriptor.getReplicationFactor())
-                                            )
-                                            .setMaxShardsPerNode(config.getMaxShardsPerNode())
-                            );
-                            log.debug("Created Collection {}, CoreAdminResponse: {}", coreName, response);
-                            scheduleCoreInit(executorService, coreDescriptor, true);
-                        } else {
-                            log.debug("Collection {} already exists in SolrCloud '{}' as {}", coreName,
-                                    config.getZkConnection(), remoteName);
-                            // TODO: Check and log the response
-                            final NamedList<Object> response = client.request(CollectionAdminRequest.reloadCollection(remoteName));
-                            log.debug("Reloaded Collection {}, CoreAdminResponse: {}", coreName, response);
-                            scheduleCoreInit(executorService, coreDescriptor, false);
-                        }
-                        availableCores.put(coreName, coreDescriptor);
-                    } catch (SolrServerException e) {
-                        log.debug("Initializing core {} ({}) failed: {}", coreName, remoteName, e.getMessage());
-                        throw new IOException(String.format("Initializing collection %s (%s) failed", coreName, remoteName), e);
-                    } finally {
-                        PathUtils.deleteRecursive(tmp);
-                    }
-                } else {
-                    if (existingCollections.contains(remoteName)) {
-                        log.debug("Collection {} exists in SolrCloud '{}' as {}", coreName, config.getZkConnection(), remoteName);
-                        scheduleCoreInit(executorService, coreDescriptor, false);
-                        availableCores.put(coreName, coreDescriptor);
-                    } else {
-                        log.warn("Collection {} (remote: {}) not available in SolrCloud '{}' " +
-                                        "but deployCores is set to false",
-                                coreName, remoteName, config.getZkConnection());
-                    }
-                }
-            }
-            log.info("Initialized {} collections in Solr-Cloud {}: {}", availableCores.size(), config.getZkConnection(), availableCores);
+            final Queue<PendingDeployment> pending = new ConcurrentLinkedQueue<>();
+            deployCores(coreDescriptors, config.getDeployParallelism(),
+                    coreDescriptor -> deployCore(coreDescriptor, client, existingCollections, sharedLibs, executorService, pending));
+            awaitDeployments(client, pending, executorService);
+            log.info("Initialized collections in Solr-Cloud {}: {}", config.getZkConnection(), getCoreStates());
         } catch (IOException e) {
             throw e;
         } catch (SolrServerException e) {
@@ -133,12 +132,568 @@ public class SolrCloudConnector extends SolrCoreContainer {
         }
     }
 
-    private void uploadConfig(final String remoteName, final Path coreDict) throws IOException {
-        try (ZkClientClusterStateProvider zkClient = createZkClient()){
-            zkClient.uploadConfig(coreDict.resolve("conf"), remoteName);
+    /**
+     * Deploy the core to SolrCloud. Creating or reloading the collection is submitted as async request,
+     * the collection is added to {@code pending} to wait for its completion and activation,
+     * see {@link #awaitDeployments(CloudSolrClient, Collection, ExecutorService)}.
+     */
+    private void deployCore(SolrCoreDescriptor coreDescriptor, CloudSolrClient client, List<String> existingCollections,
+                            Path sharedLibs, ExecutorService executorService, Queue<PendingDeployment> pending) throws IOException {
+        final String coreName = coreDescriptor.getCoreName();
+        final String remoteName = createRemoteName(coreName);
+        log.info("Initializing Core {} (remote: {})", coreName, remoteName);
+
+        if (config.isDeployCores()) {
+            try {
+                final String fingerprint = deployConfig(coreDescriptor, remoteName, sharedLibs);
+
+                if (!existingCollections.contains(remoteName)) {
+                    final String requestId = CollectionAdminRequest
+                            .createCollection(remoteName, remoteName,
+                                    Math.max(1, coreDescriptor.getNumShards()),
+                                    getReplicationFactor(coreDescriptor)
+                            )
+                            .setMaxShardsPerNode(config.getMaxShardsPerNode())
+                            .processAsync(client);
+                    log.debug("Submitted creation of Collection {} (requestId: {})", coreName, requestId);
+                    pending.add(new PendingDeployment(coreDescriptor, remoteName, requestId, fingerprint, true));
+                } else if (fingerprint == null) {
+                    log.debug("Collection {} already exists in SolrCloud '{}' as {} and config is unchanged, skipping reload",
+                            coreName, config.getZkConnection(), remoteName);
+                    pending.add(new PendingDeployment(coreDescriptor, remoteName, null, null, false));
+                } else {
+                    log.debug("Collection {} already exists in SolrCloud '{}' as {}", coreName,
+                            config.getZkConnection(), remoteName);
+                    final String requestId = CollectionAdminRequest.reloadCollection(remoteName)
+                            .processAsync(client);
+                    log.debug("Submitted reload of Collection {} (requestId: {})", coreName, requestId);
+                    pending.add(new PendingDeployment(coreDescriptor, remoteName, requestId, fingerprint, false));
+                }
+            } catch (SolrServerException e) {
+                log.debug("Initializing core {} ({}) failed: {}", coreName, remoteName, e.getMessage());
+                throw new IOException(String.format("Initializing collection %s (%s) failed", coreName, remoteName), e);
+            }
+        } else {
+            if (existingCollections.contains(remoteName)) {
+                log.debug("Collection {} exists in SolrCloud '{}' as {}", coreName, config.getZkConnection(), remoteName);
+                pending.add(new PendingDeployment(coreDescriptor, remoteName, null, null, false));
+            } else {
+                log.warn("Collection {} (remote: {}) not available in SolrCloud '{}' " +
+                                "but deployCores is set to false",
+                        coreName, remoteName, config.getZkConnection());
+            }
+        }
+    }
+
+    @Override
+    protected void doRegisterCore(SolrCoreDescriptor coreDescriptor, ExecutorService executorService) throws IOException, SolrServerException {
+        final CloudSolrClient client = sharedClient;
+        if (client == null) {
+            throw new IllegalStateException("SolrCloudConnector not initialized!");
+        }
+        final List<String> existingCollections = listCollections(client);
+        final Path sharedLibs = Files.createTempDirectory("solrSharedLibs");
+        final Queue<PendingDeployment> pending = new ConcurrentLinkedQueue<>();
+        try {
+            deployCore(coreDescriptor, client, existingCollections, sharedLibs, executorService, pending);
+        } finally {
+            PathUtils.deleteRecursive(sharedLibs);
+        }
+        awaitDeployments(client, pending, executorService);
+        for (PendingDeployment deployment : pending) {
+            if (deployment.failure != null) {
+                throw deployment.failure;
+            }
+        }
+    }
+
+    /**
+     * Delete the collection and its config from SolrCloud.
+     * Collections that were not deployed by this connector ({@code deployCores=false}) are kept.
+     */
+    @Override
+    protected void doUnregisterCore(String coreName) throws IOException, SolrServerException {
+        final CloudSolrClient client = sharedClient;
+        if (client == null) {
+            throw new IllegalStateException("SolrCloudConnector not initialized!");
+        }
+        final String remoteName = createRemoteName(coreName);
+        activationTimes.remove(coreName);
+        if (config.isDeployCores()) {
+            final NamedList<Object> response = client.request(CollectionAdminRequest.deleteCollection(remoteName));
+            log.debug("Deleted Collection {}, CoreAdminResponse: {}", coreName, response);
+            try {
+                new ConfigSetAdminRequest.Delete().setConfigSetName(remoteName).process(client);
+            } catch (SolrServerException | IOException | SolrException e) {
+                log.warn("Could not delete config {} of collection {}: {}", remoteName, coreName, e.getMessage());
+            }
+            deleteConfigFingerprint(remoteName);
+        } else {
+            log.info("Collection {} (remote: {}) not deployed by {}, keeping it in SolrCloud '{}'", coreName, remoteName,
+                    getClass().getSimpleName(), config.getZkConnection());
+        }
+    }
+
+    /**
+     * Wait for the pending deployments: first the async requests need to complete, then the collections need to
+     * become active. Active collections are scheduled for core-init, all others are marked as failed.
+     */
+    private void awaitDeployments(CloudSolrClient client, Collection<PendingDeployment> pending,
+                                  ExecutorService executorService) throws IOException {
+        awaitAsyncRequests(client, pending);
+        awaitActiveReplicas(client, pending.stream()
+                .filter(deployment -> deployment.failure == null)
+                .collect(Collectors.toList()), executorService);
+    }
+
+    /**
+     * Poll the status of all pending async requests until they are completed, failed or
+     * {@link SolrCloudConnectorConfiguration#getAsyncRequestTimeout()} expired. All requests are processed by
+     * the Overseer concurrently, so this takes roughly as long as the slowest request.
+     */
+    private void awaitAsyncRequests(CloudSolrClient client, Collection<PendingDeployment> pending) throws IOException {
+        final List<PendingDeployment> running = pending.stream()
+                .filter(deployment -> deployment.requestId != null)
+                .collect(Collectors.toList());
+        if (running.isEmpty()) {
+            return;
+        }
+        final long start = System.currentTimeMillis();
+        final long deadline = start + TimeUnit.SECONDS.toMillis(config.getAsyncRequestTimeout());
+        final int requests = running.size();
+        long pollInterval = MIN_POLL_INTERVAL;
+        while (!running.isEmpty()) {
+            final Iterator<PendingDeployment> it = running.iterator();
+            while (it.hasNext()) {
+                final PendingDeployment deployment = it.next();
+                if (pollStatus(client, deployment)) {
+                    it.remove();
+                }
+            }
+            if (running.isEmpty()) {
+                break;
+            }
+            if (System.currentTimeMillis() > deadline) {
+                for (PendingDeployment deployment : running) {
+                    deployment.fail(new IOException(String.format("Timeout after %ds waiting for %s of collection %s (requestId: %s)",
+                            config.getAsyncRequestTimeout(), deployment.isNewCore ? "creation" : "reload",
+                            deployment.remoteName, deployment.requestId)));
+                }
+                break;
+            }
+            try {
+                Thread.sleep(pollInterval);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for collections", e);
+            }
+            pollInterval = Math.min(2 * pollInterval, MAX_POLL_INTERVAL);
+        }
+        log.debug("Completed {} async collection requests in {}ms", requests, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * @return {@code true} if the async request is finished (successful or not)
+     */
+    private boolean pollStatus(CloudSolrClient client, PendingDeployment deployment) {
+        final String coreName = deployment.coreDescriptor.getCoreName();
+        final RequestStatusState state;
+        try {
+            state = CollectionAdminRequest.requestStatus(deployment.requestId).process(client).getRequestStatus();
+        } catch (SolrServerException | IOException | SolrException e) {
+            deployment.fail(new IOException(String.format("Could not retrieve status of collection %s (requestId: %s)",
+                    deployment.remoteName, deployment.requestId), e));
+            return true;
+        }
+
+        switch (state) {
+            case SUBMITTED:
+            case RUNNING:
+                return false;
+            case COMPLETED:
+                log.debug("{} Collection {} (remote: {})", deployment.isNewCore ? "Created" : "Reloaded",
+                        coreName, deployment.remoteName);
+                deleteRequestStatus(client, deployment.requestId);
+                try {
+                    if (deployment.fingerprint != null) {
+                        storeConfigFingerprint(deployment.remoteName, deployment.fingerprint);
+                    }
+                } catch (IOException e) {
+                    log.warn("Could not store fingerprint of config {}: {}", deployment.remoteName, e.getMessage());
+                }
+                return true;
+            default:
+                deleteRequestStatus(client, deployment.requestId);
+                deployment.fail(new IOException(String.format("%s of collection %s %s (requestId: %s)",
+                        deployment.isNewCore ? "Creation" : "Reload", deployment.remoteName,
+                        state == RequestStatusState.NOT_FOUND ? "was not found" : "failed", deployment.requestId)));
+                return true;
+        }
+    }
+
+    /**
+     * Watch the cluster-state of the collections until every shard has an active leader and (up to) the configured
+     * number of active replicas, or {@link SolrCloudConnectorConfiguration#getReplicaActivationTimeout()} expired.
+     * Active collections are scheduled for core-init, the time it took is available via
+     * {@link #getActivationTime(String, TimeUnit)}.
+     */
+    private void awaitActiveReplicas(CloudSolrClient client, Collection<PendingDeployment> deployments,
+                                     ExecutorService executorService) throws IOException {
+        if (deployments.isEmpty()) {
+            return;
+        }
+        final ZkStateReader zkStateReader = client.getZkStateReader();
+        // handles activations and timeouts, so neither runs on the ZooKeeper event-thread
+        final ScheduledExecutorService activationExecutor = Executors.newSingleThreadScheduledExecutor();
+        try {
+            final List<CompletableFuture<Void>> activations = new ArrayList<>(deployments.size());
+            for (PendingDeployment deployment : deployments) {
+                activations.add(awaitActiveReplicas(zkStateReader, deployment, executorService, activationExecutor));
+            }
+            CompletableFuture.allOf(activations.toArray(new CompletableFuture<?>[0])).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for active replicas", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Error while waiting for active replicas", e.getCause());
+        } finally {
+            activationExecutor.shutdownNow();
+        }
+    }
+
+    private CompletableFuture<Void> awaitActiveReplicas(ZkStateReader zkStateReader, PendingDeployment deployment,
+                                                        ExecutorService executorService, ScheduledExecutorService activationExecutor) {
+        final SolrCoreDescriptor coreDescriptor = deployment.coreDescriptor;
+        final String coreName = coreDescriptor.getCoreName();
+        final int replicationFactor = getReplicationFactor(coreDescriptor);
+        final CompletableFuture<Void> activation = new CompletableFuture<>();
+        final AtomicBoolean settled = new AtomicBoolean(false);
+        final long start = System.nanoTime();
+
+        final CollectionStateWatcher watcher = (liveNodes, collection) -> {
+            if (!isActive(liveNodes, collection, replicationFactor)) {
+                return false;
+            }
+            if (settled.compareAndSet(false, true)) {
+                final long activationTime = System.nanoTime() - start;
+                // called on the ZooKeeper event-thread, which must not be blocked by state-listeners
+                activationExecutor.execute(() -> {
+                    try {
+                        activationTimes.put(coreName, activationTime);
+                        log.debug("Collection {} (remote: {}) is active after {}ms", coreName, deployment.remoteName,
+                                TimeUnit.NANOSECONDS.toMillis(activationTime));
+                        scheduleCoreInit(executorService, coreDescriptor, deployment.isNewCore);
+                    } finally {
+                        activation.complete(null);
+                    }
+                });
+            }
+            return true;
+        };
+        activationExecutor.schedule(() -> {
+            if (settled.compareAndSet(false, true)) {
+                zkStateReader.removeCollectionStateWatcher(deployment.remoteName, watcher);
+                deployment.fail(new IOException(String.format("Collection %s has no active leader and %d active replicas per shard after %ds",
+                        deployment.remoteName, replicationFactor, config.getReplicaActivationTimeout()),
+                        new TimeoutException()));
+                activation.complete(null);
+            }
+        }, config.getReplicaActivationTimeout(), TimeUnit.SECONDS);
+        zkStateReader.registerCollectionStateWatcher(deployment.remoteName, watcher);
+        return activation;
+    }
+
+    /**
+     * @return {@code true} if every shard of the collection has an active leader and at least
+     *      {@code replicationFactor} active replicas (or all replicas active, if there are less)
+     */
+    static boolean isActive(Set<String> liveNodes, DocCollection collection, int replicationFactor) {
+        if (collection == null || collection.getActiveSlices().isEmpty()) {
+            return false;
+        }
+        for (Slice slice : collection.getActiveSlices()) {
+            final Replica leader = slice.getLeader();
+            if (leader == null || !leader.isActive(liveNodes)) {
+                return false;
+            }
+            final long activeReplicas = slice.getReplicas().stream()
+                    .filter(replica -> replica.isActive(liveNodes))
+                    .count();
+            if (activeReplicas < Math.min(replicationFactor, slice.getReplicas().size())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int getReplicationFactor(SolrCoreDescriptor coreDescriptor) {
+        return Math.max(2, coreDescriptor.getReplicationFactor());
+    }
+
+    /**
+     * @param coreName the core
+     * @param unit the time-unit of the result
+     * @return the time it took the collection to become active (every shard has an active leader and the
+     *      configured number of active replicas), or {@code -1} if the collection is not active (yet).
+     */
+    public long getActivationTime(String coreName, TimeUnit unit) {
+        final Long activationTime = activationTimes.get(coreName);
+        return activationTime == null ? -1 : unit.convert(activationTime, TimeUnit.NANOSECONDS);
+    }
+
+    private void deleteRequestStatus(CloudSolrClient client, String requestId) {
+        try {
+            CollectionAdminRequest.deleteAsyncId(requestId).process(client);
+        } catch (SolrServerException | IOException | SolrException e) {
+            log.debug("Could not delete status of async request {}: {}", requestId, e.getMessage());
+        }
+    }
+
+    private List<String> listCollections(CloudSolrClient client) throws IOException, SolrServerException {
+        /* NOTE: do not use as this breaks compatibility with lower Solr Versions
+         * <code>final List<String> existingCollections = CollectionAdminRequest.listCollections(client);</code>
+         */
+        @SuppressWarnings("unchecked")
+        final List<String> existingCollections =  (List<String>)new CollectionAdminRequest.List()
+                .process(client).getResponse().get("collections");
+        return existingCollections;
+    }
+
+    @Override
+    public void shutdown() throws IOException {
+        super.shutdown();
+        final CloudSolrClient client = sharedClient;
+        sharedClient = null;
+        activationTimes.clear();
+        if (client != null) {
+            client.close();
+        }
+    }
+
+    /**
+     * Upload the config of the core to ZooKeeper. If the descriptor provides direct access to the core-bundle
+     * the config is read from there, otherwise the core-directory is created in a temp-directory.
+     * @return the fingerprint of the uploaded config, or {@code null} if the config in ZooKeeper is up to date
+     * @see SolrCoreDescriptor#visitCoreBundle(SolrCoreDescriptor.CoreBundleVisitor)
+     */
+    private String deployConfig(final SolrCoreDescriptor coreDescriptor, final String remoteName, final Path sharedLibs) throws IOException {
+        final AtomicReference<String> fingerprint = new AtomicReference<>();
+        if (coreDescriptor.visitCoreBundle(coreDir -> fingerprint.set(uploadConfig(remoteName, coreDir.resolve("conf"))))) {
+            log.trace("Read config {} directly from the core-bundle", remoteName);
+            return fingerprint.get();
+        }
+
+        final Path tmp = Files.createTempDirectory(coreDescriptor.getCoreName());
+        try {
+            coreDescriptor.initCoreDirectory(tmp, sharedLibs);
+            return uploadConfig(remoteName, tmp.resolve("conf"));
+        } finally {
+            PathUtils.deleteRecursive(tmp);
+        }
+    }
+
+    /**
+     * Upload the config to ZooKeeper, unless the config stored in ZooKeeper has the same fingerprint and
+     * was not modified since it was uploaded.
+     * @return the fingerprint of the uploaded config, or {@code null} if the upload was skipped
+     */
+    private String uploadConfig(final String remoteName, final Path confDir) throws IOException {
+        final String fingerprint = CoreBundleManifest.computeFingerprint(confDir);
+        final SolrZkClient zk = getZkClient();
+        final String stored = readConfigFingerprint(zk, remoteName);
+        if (stored != null && stored.startsWith(fingerprint + " ")) {
+            if (stored.equals(fingerprint + " " + getConfigVersion(zk, remoteName))) {
+                log.debug("Config {} in ZooKeeper is up to date (fingerprint {}), skipping upload", remoteName, fingerprint);
+                return null;
+            }
+            log.info("Config {} was modified in ZooKeeper, uploading it again", remoteName);
+        }
+        uploadConfigDir(zk, confDir, remoteName);
+        return fingerprint;
+    }
+
+    /**
+     * Upload the files of the config-dir to ZooKeeper, using up to {@link SolrCloudConnectorConfiguration#getUploadParallelism()}
+     * concurrent uploads. Files matching {@link ZkConfigManager#UPLOAD_FILENAME_EXCLUDE_PATTERN} are skipped,
+     * like {@link ZkConfigManager#uploadConfigDir(Path, String)} does.
+     */
+    private void uploadConfigDir(final SolrZkClient zk, final Path confDir, final String remoteName) throws IOException {
+        if (!Files.isDirectory(confDir)) {
+            throw new IOException("Config-dir " + confDir + " does not exist");
+        }
+        final String configPath = ZkConfigManager.CONFIGS_ZKNODE + "/" + remoteName;
+        final List<Path> files;
+        try (Stream<Path> stream = Files.walk(confDir)) {
+            files = stream
+                    .filter(Files::isRegularFile)
+                    .filter(f -> !ZkConfigManager.UPLOAD_FILENAME_EXCLUDE_PATTERN.matcher(f.getFileName().toString()).matches())
+                    .collect(Collectors.toList());
         }
+        final List<Callable<Void>> uploads = new ArrayList<>(files.size());
+        final Set<String> zkPaths = new HashSet<>();
+        for (Path file : files) {
+            final String zkPath = configPath + "/" + StringUtils.replace(confDir.relativize(file).toString(), file.getFileSystem().getSeparator(), "/");
+            zkPaths.add(zkPath);
+            uploads.add(() -> {
+                zk.makePath(zkPath, Files.readAllBytes(file), CreateMode.PERSISTENT, null, false, true);
+                return null;
+            });
+        }
+
+        final long start = System.currentTimeMillis();
+        final ExecutorService uploadExecutor = Executors.newFixedThreadPool(Math.max(1, Math.min(config.getUploadParallelism(), uploads.size())));
+        try {
+            for (Future<Void> upload : uploadExecutor.invokeAll(uploads)) {
+                upload.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while uploading config " + remoteName, e);
+        } catch (ExecutionException e) {
+            throw new IOException("Could not upload config " + remoteName, e.getCause());
+        } finally {
+            uploadExecutor.shutdownNow();
+        }
+        log.debug("Uploaded {} files of config {} to ZooKeeper in {}ms", uploads.size(), remoteName, System.currentTimeMillis() - start);
+        deleteStaleConfigFiles(zk, configPath, zkPaths);
+    }
+
+    /**
+     * Delete the files of the config in ZooKeeper that are not part of the uploaded config (anymore).
+     * @param zkPaths the paths of the uploaded files
+     */
+    private void deleteStaleConfigFiles(final SolrZkClient zk, final String configPath, final Set<String> zkPaths) throws IOException {
+        try {
+            final List<String> stale = new ArrayList<>();
+            walkConfig(zk, configPath, (path, stat) -> {
+                // a node is still required if it was uploaded or if it is the parent of an uploaded file
+                if (!zkPaths.contains(path) && zkPaths.stream().noneMatch(p -> p.startsWith(path + "/"))
+                        && stale.stream().noneMatch(p -> path.startsWith(p + "/"))) {
+                    stale.add(path);
+                }
+            });
+            for (String path : stale) {
+                zk.clean(path);
+            }
+            if (!stale.isEmpty()) {
+                log.debug("Deleted {} stale nodes of config {}: {}", stale.size(), configPath, stale);
+            }
+        } catch (KeeperException e) {
+            throw new IOException("Could not delete stale files of config " + configPath, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while deleting stale files of config " + configPath, e);
+        }
+    }
+
+    /**
+     * The version of the config in ZooKeeper: the highest zxid that created, modified or changed the children of
+     * any node of the config. It changes with every modification of the config, e.g. by the Schema- or Config-API.
+     * @return the version of the config, or {@code -1} if the config does not exist
+     */
+    private static long getConfigVersion(final SolrZkClient zk, final String remoteName) throws IOException {
+        final String configPath = ZkConfigManager.CONFIGS_ZKNODE + "/" + remoteName;
+        try {
+            final AtomicLong version = new AtomicLong(-1);
+            walkConfig(zk, configPath, (path, stat) -> version.accumulateAndGet(Math.max(stat.getMzxid(), stat.getPzxid()), Math::max));
+            return version.get();
+        } catch (KeeperException.NoNodeException e) {
+            // modified concurrently
+            return -1;
+        } catch (KeeperException e) {
+            throw new IOException("Could not read version of config " + remoteName, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading version of config " + remoteName, e);
+        }
+    }
+
+    /**
+     * Visit the provided node and all its descendants (parents before their children), non-existing nodes are skipped.
+     */
+    private static void walkConfig(final SolrZkClient zk, final String path, final BiConsumer<String, Stat> visitor)
+            throws KeeperException, InterruptedException {
+        final Stat stat = zk.exists(path, null, true);
+        if (stat == null) {
+            return;
+        }
+        visitor.accept(path, stat);
+        if (stat.getNumChildren() > 0) {
+            for (String child : zk.getChildren(path, null, true)) {
+                walkConfig(zk, path + "/" + child, visitor);
+            }
+        }
+    }
+
+    /**
+     * Store the fingerprint of the config, this is done after the collection was successfully created/reloaded
+     * so a failed reload is retried on the next start.
+     */
+    private void storeConfigFingerprint(final String remoteName, final String fingerprint) throws IOException {
+        try {
+            final SolrZkClient zk = getZkClient();
+            final String path = getConfigFingerprintPath(remoteName);
+            // Solr might have modified the config when creating the collection (e.g. the managed-schema)
+            final byte[] data = (fingerprint + " " + getConfigVersion(zk, remoteName)).getBytes(StandardCharsets.UTF_8);
+            try {
+                zk.setData(path, data, true);
+            } catch (KeeperException.NoNodeException e) {
+                zk.makePath(path, data, true);
+            }
+        } catch (KeeperException e) {
+            throw new IOException("Could not store fingerprint of config " + remoteName, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while storing fingerprint of config " + remoteName, e);
+        }
+    }
+
+    private String readConfigFingerprint(final SolrZkClient zk, final String remoteName) throws IOException {
+        try {
+            final byte[] data = zk.getData(getConfigFingerprintPath(remoteName), null, null, true);
+            return data == null ? null : new String(data, StandardCharsets.UTF_8);
+        } catch (KeeperException.NoNodeException e) {
+            return null;
+        } catch (KeeperException e) {
+            throw new IOException("Could not read fingerprint of config " + remoteName, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading fingerprint of config " + remoteName, e);
+        }
+    }
+
+    private void deleteConfigFingerprint(final String remoteName) {
+        try {
+            getZkClient().clean(getConfigFingerprintPath(remoteName));
+        } catch (KeeperException e) {
+            log.warn("Could not delete fingerprint of config {}: {}", remoteName, e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while deleting fingerprint of config {}", remoteName);
+        }
+    }
+
+    private static String getConfigFingerprintPath(String remoteName) {
+        return CONFIG_FINGERPRINT_ZKNODE + "/" + remoteName;
     }
     
+    /**
+     * @return the ZooKeeper client of the shared {@link CloudSolrClient}, so all ZooKeeper operations
+     *      share a single session.
+     */
+    protected SolrZkClient getZkClient() {
+        final CloudSolrClient client = sharedClient;
+        if (client == null) {
+            throw new IllegalStateException("SolrCloudConnector not initialized!");
+        }
+        return client.getZkStateReader().getZkClient();
+    }
+
+    /**
+     * @deprecated the connector uses the ZooKeeper connection of the shared {@link CloudSolrClient},
+     *      see {@link #getZkClient()}
+     */
+    @Deprecated
     protected ZkClientClusterStateProvider createZkClient() {
         return new ZkClientClusterStateProvider(config.getZkConnection());
     }
@@ -152,10 +707,44 @@ public class SolrCloudConnector extends SolrCoreContainer {
                 .build();
     }
 
+    /**
+     * Create a SolrClient for the provided collection. The returned client is a lightweight view on the
+     * {@link CloudSolrClient} shared by this connector, closing it will not close the shared client.
+     */
     @Override
     protected SolrClient createSolrClient(String coreName) {
-        CloudSolrClient solrClient = createSolrClient();
-        solrClient.setDefaultCollection(createRemoteName(coreName));
-        return solrClient;
+        final CloudSolrClient client = sharedClient;
+        if (client == null) {
+            throw new IllegalStateException("SolrCloudConnector not initialized!");
+        }
+        return new CollectionSolrClient(client, createRemoteName(coreName));
+    }
+
+    /**
+     * A collection that is not yet available: either an async create/reload request submitted to the Overseer
+     * ({@code requestId}) is not yet completed, or the replicas are not yet active.
+     */
+    private final class PendingDeployment {
+        private final SolrCoreDescriptor coreDescriptor;
+        private final String remoteName;
+        private final String requestId;
+        private final String fingerprint;
+        private final boolean isNewCore;
+        private volatile IOException failure = null;
+
+        private PendingDeployment(SolrCoreDescriptor coreDescriptor, String remoteName, String requestId,
+                                String fingerprint, boolean isNewCore) {
+            this.coreDescriptor = coreDescriptor;
+            this.remoteName = remoteName;
+            this.requestId = requestId;
+            this.fingerprint = fingerprint;
+            this.isNewCore = isNewCore;
+        }
+
+        private void fail(IOException cause) {
+            log.error("Initializing core {} ({}) failed: {}", coreDescriptor.getCoreName(), remoteName, cause.getMessage());
+            failure = cause;
+            markCoreFailed(coreDescriptor.getCoreName(), cause);
+        }
     }
 }
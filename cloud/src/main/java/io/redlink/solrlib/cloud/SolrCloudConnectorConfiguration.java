@@ -23,6 +23,14 @@ public class SolrCloudConnectorConfiguration {
     private String prefix = "";
     private int maxShardsPerNode = 1;
     private boolean deployCores = true;
+    /** max. number of collections to deploy concurrently during init */
+    private int deployParallelism = 1;
+    /** max. number of files of a config to upload to ZooKeeper concurrently */
+    private int uploadParallelism = 4;
+    /** max. time (in seconds) to wait for the async creation/reload of a collection */
+    private long asyncRequestTimeout = 180;
+    /** max. time (in seconds) to wait for the replicas of a collection to become active */
+    private long replicaActivationTimeout = 60;
 
     public String getZkConnection() {
         return zkConnection;
@@ -55,4 +63,36 @@ public class SolrCloudConnectorConfiguration {
     public void setDeployCores(boolean deployCores) {
         this.deployCores = deployCores;
     }
+
+    public int getDeployParallelism() {
+        return deployParallelism;
+    }
+
+    public void setDeployParallelism(int deployParallelism) {
+        this.deployParallelism = deployParallelism;
+    }
+
+    public int getUploadParallelism() {
+        return uploadParallelism;
+    }
+
+    public void setUploadParallelism(int uploadParallelism) {
+        this.uploadParallelism = uploadParallelism;
+    }
+
+    public long getAsyncRequestTimeout() {
+        return asyncRequestTimeout;
+    }
+
+    public void setAsyncRequestTimeout(long asyncRequestTimeout) {
+        this.asyncRequestTimeout = asyncRequestTimeout;
+    }
+
+    public long getReplicaActivationTimeout() {
+        return replicaActivationTimeout;
+    }
+
+    public void setReplicaActivationTimeout(long replicaActivationTimeout) {
+        this.replicaActivationTimeout = replicaActivationTimeout;
+    }
 }
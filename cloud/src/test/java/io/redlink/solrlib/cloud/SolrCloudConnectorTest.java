@@ -17,22 +17,50 @@
 package io.redlink.solrlib.cloud;
 
 import com.google.common.collect.Sets;
+import io.redlink.solrlib.CollectionSolrClient;
+import io.redlink.solrlib.CoreBundleManifest;
+import io.redlink.solrlib.SimpleCoreDescriptor;
 import io.redlink.solrlib.SolrCoreDescriptor;
+import io.redlink.solrlib.SolrCoreState;
+import io.redlink.utils.PathUtils;
+import io.redlink.utils.ResourceLoaderUtils;
 import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrServerException;
 import org.apache.solr.client.solrj.impl.CloudSolrClient;
-import org.apache.solr.client.solrj.impl.ZkClientClusterStateProvider;
 import org.apache.solr.client.solrj.request.CollectionAdminRequest;
+import org.apache.solr.client.solrj.response.RequestStatusState;
+import org.apache.solr.common.cloud.CollectionStateWatcher;
+import org.apache.solr.common.cloud.DocCollection;
+import org.apache.solr.common.cloud.Replica;
+import org.apache.solr.common.cloud.Slice;
+import org.apache.solr.common.cloud.SolrZkClient;
+import org.apache.solr.common.cloud.ZkStateReader;
+import org.apache.solr.common.util.NamedList;
 import org.apache.solr.common.util.SimpleOrderedMap;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.data.Stat;
 import org.hamcrest.Matchers;
 import org.junit.Test;
+import org.mockito.stubbing.Answer;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.UUID;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.*;
 
 /**
@@ -70,43 +98,75 @@ public class SolrCloudConnectorTest {
 
         CloudSolrClient c1 = connector.createSolrClient();
         assertThat(c1.getZkHost(), Matchers.equalTo(zkConnection));
+    }
 
-        for (int i = 0; i < 10; i++) {
-            final String coreName = UUID.randomUUID().toString();
-            SolrClient cI = connector.createSolrClient(coreName);
-            assertThat(cI, Matchers.instanceOf(CloudSolrClient.class));
-            CloudSolrClient c2 = (CloudSolrClient) cI;
-            assertThat(c2.getZkHost(), Matchers.equalTo(zkConnection));
-            assertThat(c2.getDefaultCollection(), Matchers.equalTo(coreName));
+    @Test
+    public void testSharedClient() throws Exception {
+        final ExecutorService exec = Executors.newSingleThreadExecutor();
+        try {
+            final SolrCloudConnectorConfiguration config = new SolrCloudConnectorConfiguration();
+            final CloudSolrClient solrClient = mock(CloudSolrClient.class);
+            final SimpleOrderedMap<Object> collectionsListResponse = new SimpleOrderedMap<>();
+            collectionsListResponse.add("collections", Collections.emptyList());
+            when(solrClient.request(any(CollectionAdminRequest.List.class), eq(null))).thenReturn(collectionsListResponse);
+
+            final SolrCloudConnector connector = spy(new SolrCloudConnector(Collections.<SolrCoreDescriptor>emptySet(), config, exec));
+            when(connector.createSolrClient()).thenReturn(solrClient);
+
+            try {
+                connector.createSolrClient("foo");
+                fail("must not create solr-client for non-initialized connector");
+            } catch (IllegalStateException ignore) {
+            }
+
+            connector.init(exec);
+            for (int i = 0; i < 10; i++) {
+                final String coreName = UUID.randomUUID().toString();
+                SolrClient cI = connector.createSolrClient(coreName);
+                assertThat(cI, Matchers.instanceOf(CollectionSolrClient.class));
+                assertThat(((CollectionSolrClient) cI).getCollection(), Matchers.equalTo(coreName));
+                assertThat(((CollectionSolrClient) cI).getDelegate(), Matchers.sameInstance(solrClient));
+                cI.close();
+            }
+            verify(connector, times(1)).createSolrClient();
+            verify(solrClient, never()).close();
+
+            connector.shutdown();
+            verify(solrClient, times(1)).close();
+        } finally {
+            exec.shutdownNow();
         }
     }
 
     @Test
     public void testInitCore() throws Exception {
         final ExecutorService exec = Executors.newSingleThreadExecutor();
+        final Path conf = Files.createTempDirectory("conf");
         try {
+            Files.write(conf.resolve("solrconfig.xml"), "<config/>".getBytes(StandardCharsets.UTF_8));
             final String zkConnection = UUID.randomUUID().toString();
             final SolrCloudConnectorConfiguration config = new SolrCloudConnectorConfiguration();
             config.setZkConnection(zkConnection);
 
             final CloudSolrClient solrClient = mock(CloudSolrClient.class);
-            final ZkClientClusterStateProvider zkClient = mock(ZkClientClusterStateProvider.class);
+            final ZkStateReader zkStateReader = mockZkStateReader(mock(SolrZkClient.class));
+            when(solrClient.getZkStateReader()).thenReturn(zkStateReader);
+            mockAsyncRequests(solrClient, RequestStatusState.COMPLETED);
             final SimpleOrderedMap<Object> collectionsListResponse = new SimpleOrderedMap<>();
             collectionsListResponse.add("collections", Collections.singletonList("core1"));
 
             when(solrClient.request(any(CollectionAdminRequest.List.class), eq(null))).thenReturn(collectionsListResponse);
             
-            final SolrCoreDescriptor solrCoreDescriptor1 = mock(SolrCoreDescriptor.class);
-            when(solrCoreDescriptor1.getCoreName()).thenReturn("core1");
-            final SolrCoreDescriptor solrCoreDescriptor2 = mock(SolrCoreDescriptor.class);
-            when(solrCoreDescriptor2.getCoreName()).thenReturn("core2");
+            final SolrCoreDescriptor solrCoreDescriptor1 = mockCoreDescriptor("core1", conf);
+            final SolrCoreDescriptor solrCoreDescriptor2 = mockCoreDescriptor("core2", conf);
             final SolrCloudConnector connector = spy(new SolrCloudConnector(Sets.newHashSet(solrCoreDescriptor1, solrCoreDescriptor2), config, exec));
             when(connector.createSolrClient()).thenReturn(solrClient);
-            when(connector.createZkClient()).thenReturn(zkClient);
-            
+
             connector.initialize();
             assertNotNull(connector.getSolrClient(solrCoreDescriptor1));
             assertNotNull(connector.getSolrClient(solrCoreDescriptor2));
+            assertThat(connector.getActivationTime("core1", TimeUnit.NANOSECONDS), Matchers.greaterThanOrEqualTo(0L));
+            assertThat(connector.getActivationTime("core2", TimeUnit.NANOSECONDS), Matchers.greaterThanOrEqualTo(0L));
 
             verify(solrCoreDescriptor1, times(1)).initCoreDirectory(any(), any());
             verify(solrCoreDescriptor1, never()).onCoreCreated(any());
@@ -116,8 +176,284 @@ public class SolrCloudConnectorTest {
             verify(solrCoreDescriptor2, times(1)).onCoreCreated(any());
             verify(solrCoreDescriptor2, times(1)).onCoreStarted(any());
 
+            connector.unregisterCore("core2");
+            assertEquals("no activation-time for a deleted collection", -1, connector.getActivationTime("core2", TimeUnit.NANOSECONDS));
+            assertThat(connector.getActivationTime("core1", TimeUnit.NANOSECONDS), Matchers.greaterThanOrEqualTo(0L));
+
+        } finally {
+            exec.shutdownNow();
+            PathUtils.deleteRecursive(conf);
+        }
+    }
+
+    @Test
+    public void testSkipUnchangedConfig() throws Exception {
+        final ExecutorService exec = Executors.newSingleThreadExecutor();
+        final Path conf = Files.createTempDirectory("conf");
+        try {
+            Files.write(conf.resolve("solrconfig.xml"), "<config/>".getBytes(StandardCharsets.UTF_8));
+            final String fingerprint = CoreBundleManifest.computeFingerprint(conf);
+
+            final SolrCloudConnectorConfiguration config = new SolrCloudConnectorConfiguration();
+            final CloudSolrClient solrClient = mock(CloudSolrClient.class);
+            final SolrZkClient zk = mock(SolrZkClient.class);
+            when(zk.getData(eq(SolrCloudConnector.CONFIG_FINGERPRINT_ZKNODE + "/unchanged"), any(), any(), anyBoolean()))
+                    .thenReturn((fingerprint + " 5").getBytes(StandardCharsets.UTF_8));
+            when(zk.exists(eq("/configs/unchanged"), any(), anyBoolean())).thenReturn(zkStat(5, 0));
+            when(zk.getData(eq(SolrCloudConnector.CONFIG_FINGERPRINT_ZKNODE + "/changed"), any(), any(), anyBoolean()))
+                    .thenReturn("outdated 5".getBytes(StandardCharsets.UTF_8));
+            when(zk.exists(eq("/configs/changed"), any(), anyBoolean())).thenReturn(zkStat(5, 2));
+            when(zk.getChildren(eq("/configs/changed"), any(), anyBoolean())).thenReturn(Arrays.asList("solrconfig.xml", "stale.txt"));
+            when(zk.exists(eq("/configs/changed/solrconfig.xml"), any(), anyBoolean())).thenReturn(zkStat(7, 0));
+            when(zk.exists(eq("/configs/changed/stale.txt"), any(), anyBoolean())).thenReturn(zkStat(5, 0));
+            // modified in ZooKeeper after the upload
+            when(zk.getData(eq(SolrCloudConnector.CONFIG_FINGERPRINT_ZKNODE + "/modified"), any(), any(), anyBoolean()))
+                    .thenReturn((fingerprint + " 3").getBytes(StandardCharsets.UTF_8));
+            when(zk.exists(eq("/configs/modified"), any(), anyBoolean())).thenReturn(zkStat(5, 0));
+            final ZkStateReader zkStateReader = mockZkStateReader(zk);
+            when(solrClient.getZkStateReader()).thenReturn(zkStateReader);
+            mockAsyncRequests(solrClient, RequestStatusState.COMPLETED);
+
+            final SimpleOrderedMap<Object> collectionsListResponse = new SimpleOrderedMap<>();
+            collectionsListResponse.add("collections", Arrays.asList("unchanged", "changed", "modified"));
+            when(solrClient.request(any(CollectionAdminRequest.List.class), eq(null))).thenReturn(collectionsListResponse);
+
+            final SolrCoreDescriptor unchanged = mockCoreDescriptor("unchanged", conf);
+            final SolrCoreDescriptor changed = mockCoreDescriptor("changed", conf);
+            final SolrCoreDescriptor modified = mockCoreDescriptor("modified", conf);
+            final SolrCloudConnector connector = spy(new SolrCloudConnector(Sets.newHashSet(unchanged, changed, modified), config, exec));
+            when(connector.createSolrClient()).thenReturn(solrClient);
+
+            connector.initialize();
+            assertNotNull(connector.getSolrClient(unchanged));
+            assertNotNull(connector.getSolrClient(changed));
+            assertNotNull(connector.getSolrClient(modified));
+
+            verify(zk, never()).makePath(eq("/configs/unchanged/solrconfig.xml"), any(byte[].class), any(), any(), anyBoolean(), anyBoolean());
+            verify(zk, times(1)).makePath(eq("/configs/changed/solrconfig.xml"), any(byte[].class), eq(CreateMode.PERSISTENT), any(), eq(false), anyBoolean());
+            verify(connector, never()).createZkClient();
+            verify(zk, times(1)).makePath(eq("/configs/modified/solrconfig.xml"), any(byte[].class), eq(CreateMode.PERSISTENT), any(), eq(false), anyBoolean());
+            verify(zk, times(1)).clean("/configs/changed/stale.txt");
+            verify(zk, never()).clean("/configs/changed/solrconfig.xml");
+            verify(solrClient, times(2)).request(any(CollectionAdminRequest.Reload.class), eq(null));
+            verify(zk, times(1)).setData(eq(SolrCloudConnector.CONFIG_FINGERPRINT_ZKNODE + "/changed"),
+                    eq((fingerprint + " 7").getBytes(StandardCharsets.UTF_8)), anyBoolean());
+            verify(zk, times(1)).setData(eq(SolrCloudConnector.CONFIG_FINGERPRINT_ZKNODE + "/modified"),
+                    eq((fingerprint + " 5").getBytes(StandardCharsets.UTF_8)), anyBoolean());
+            verify(zk, never()).setData(eq(SolrCloudConnector.CONFIG_FINGERPRINT_ZKNODE + "/unchanged"), any(byte[].class), anyBoolean());
+        } finally {
+            exec.shutdownNow();
+            PathUtils.deleteRecursive(conf);
+        }
+    }
+
+    @Test
+    public void testUploadFromCoreBundle() throws Exception {
+        final ExecutorService exec = Executors.newSingleThreadExecutor();
+        try {
+            final SolrCloudConnectorConfiguration config = new SolrCloudConnectorConfiguration();
+            final CloudSolrClient solrClient = mock(CloudSolrClient.class);
+            final SolrZkClient zk = mock(SolrZkClient.class);
+            final ZkStateReader zkStateReader = mockZkStateReader(zk);
+            when(solrClient.getZkStateReader()).thenReturn(zkStateReader);
+            mockAsyncRequests(solrClient, RequestStatusState.COMPLETED);
+
+            final SimpleOrderedMap<Object> collectionsListResponse = new SimpleOrderedMap<>();
+            collectionsListResponse.add("collections", Collections.emptyList());
+            when(solrClient.request(any(CollectionAdminRequest.List.class), eq(null))).thenReturn(collectionsListResponse);
+
+            final SimpleCoreDescriptor basic = spy(new SimpleCoreDescriptor("basic",
+                    ResourceLoaderUtils.getResourceAsPath("/basic.zip", SolrCloudConnectorTest.class)));
+            final SolrCloudConnector connector = spy(new SolrCloudConnector(Collections.singleton(basic), config, exec));
+            when(connector.createSolrClient()).thenReturn(solrClient);
+
+            connector.initialize();
+            assertNotNull(connector.getSolrClient(basic));
+
+            verify(basic, never()).initCoreDirectory(any(), any());
+            verify(zk, times(1)).makePath(eq("/configs/basic/solrconfig.xml"), any(byte[].class), eq(CreateMode.PERSISTENT), any(), eq(false), anyBoolean());
+            verify(zk, times(1)).makePath(eq("/configs/basic/lang/stopwords_en.txt"), any(byte[].class), eq(CreateMode.PERSISTENT), any(), eq(false), anyBoolean());
+            verify(zk, never()).makePath(endsWith("core.properties"), any(byte[].class), any(), any(), anyBoolean(), anyBoolean());
+            verify(solrClient, times(1)).request(any(CollectionAdminRequest.Create.class), eq(null));
+        } finally {
+            exec.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testUploadFromCustomCoreDirectory() throws Exception {
+        final ExecutorService exec = Executors.newSingleThreadExecutor();
+        try {
+            final SolrCloudConnectorConfiguration config = new SolrCloudConnectorConfiguration();
+            final CloudSolrClient solrClient = mock(CloudSolrClient.class);
+            final SolrZkClient zk = mock(SolrZkClient.class);
+            final ZkStateReader zkStateReader = mockZkStateReader(zk);
+            when(solrClient.getZkStateReader()).thenReturn(zkStateReader);
+            mockAsyncRequests(solrClient, RequestStatusState.COMPLETED);
+
+            final SimpleOrderedMap<Object> collectionsListResponse = new SimpleOrderedMap<>();
+            collectionsListResponse.add("collections", Collections.emptyList());
+            when(solrClient.request(any(CollectionAdminRequest.List.class), eq(null))).thenReturn(collectionsListResponse);
+
+            // subclasses changing the core-directory must not be bypassed by reading the core-bundle
+            final SimpleCoreDescriptor custom = new SimpleCoreDescriptor("custom",
+                    ResourceLoaderUtils.getResourceAsPath("/basic.zip", SolrCloudConnectorTest.class)) {
+                @Override
+                public void initCoreDirectory(Path coreDir, Path sharedLibDir) throws IOException {
+                    super.initCoreDirectory(coreDir, sharedLibDir);
+                    Files.write(coreDir.resolve("conf").resolve("generated.txt"), "generated".getBytes(StandardCharsets.UTF_8));
+                }
+            };
+            assertFalse(custom.isCoreBundleAccess());
+            // subclasses only implementing the callbacks can read the core-bundle
+            assertTrue(new SimpleCoreDescriptor("callbacks", ResourceLoaderUtils.getResourceAsPath("/basic.zip", SolrCloudConnectorTest.class)) {
+                @Override
+                public void onCoreCreated(SolrClient solrClient) {
+                }
+            }.isCoreBundleAccess());
+            final SolrCloudConnector connector = spy(new SolrCloudConnector(Collections.singleton(custom), config, exec));
+            when(connector.createSolrClient()).thenReturn(solrClient);
+
+            connector.initialize();
+            assertNotNull(connector.getSolrClient(custom));
+
+            verify(zk, times(1)).makePath(eq("/configs/custom/generated.txt"), any(byte[].class), eq(CreateMode.PERSISTENT), any(), eq(false), anyBoolean());
         } finally {
             exec.shutdownNow();
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testAsyncCreateFailed() throws Exception {
+        final ExecutorService exec = Executors.newSingleThreadExecutor();
+        final Path conf = Files.createTempDirectory("conf");
+        try {
+            Files.write(conf.resolve("solrconfig.xml"), "<config/>".getBytes(StandardCharsets.UTF_8));
+            final SolrCloudConnectorConfiguration config = new SolrCloudConnectorConfiguration();
+            final CloudSolrClient solrClient = mock(CloudSolrClient.class);
+            final SolrZkClient zk = mock(SolrZkClient.class);
+            final ZkStateReader zkStateReader = mockZkStateReader(zk);
+            when(solrClient.getZkStateReader()).thenReturn(zkStateReader);
+            mockAsyncRequests(solrClient, RequestStatusState.FAILED);
+
+            final SimpleOrderedMap<Object> collectionsListResponse = new SimpleOrderedMap<>();
+            collectionsListResponse.add("collections", Collections.emptyList());
+            when(solrClient.request(any(CollectionAdminRequest.List.class), eq(null))).thenReturn(collectionsListResponse);
+
+            final SolrCoreDescriptor failing = mockCoreDescriptor("failing", conf);
+            final SolrCloudConnector connector = spy(new SolrCloudConnector(Collections.singleton(failing), config, exec));
+            when(connector.createSolrClient()).thenReturn(solrClient);
+
+            connector.initialize();
+            try {
+                connector.getSolrClient(failing);
+                fail("core must not be available if the creation failed");
+            } catch (SolrServerException expected) {
+                assertThat(expected.getCause().getMessage(), Matchers.containsString("failed"));
+            }
+            assertEquals(SolrCoreState.FAILED, connector.getCoreState("failing"));
+            verify(failing, never()).onCoreCreated(any());
+            verify(solrClient, times(1)).request(any(CollectionAdminRequest.DeleteStatus.class), eq(null));
+            verify(zk, never()).setData(eq(SolrCloudConnector.CONFIG_FINGERPRINT_ZKNODE + "/failing"), any(byte[].class), anyBoolean());
+        } finally {
+            exec.shutdownNow();
+            PathUtils.deleteRecursive(conf);
+        }
+    }
+
+    @Test
+    public void testReplicaActivationTimeout() throws Exception {
+        final ExecutorService exec = Executors.newSingleThreadExecutor();
+        try {
+            final SolrCloudConnectorConfiguration config = new SolrCloudConnectorConfiguration();
+            config.setDeployCores(false);
+            config.setReplicaActivationTimeout(1);
+            final CloudSolrClient solrClient = mock(CloudSolrClient.class);
+            // replicas never become active
+            final ZkStateReader zkStateReader = mock(ZkStateReader.class);
+            when(solrClient.getZkStateReader()).thenReturn(zkStateReader);
+
+            final SimpleOrderedMap<Object> collectionsListResponse = new SimpleOrderedMap<>();
+            collectionsListResponse.add("collections", Collections.singletonList("inactive"));
+            when(solrClient.request(any(CollectionAdminRequest.List.class), eq(null))).thenReturn(collectionsListResponse);
+
+            final SolrCoreDescriptor inactive = mock(SolrCoreDescriptor.class);
+            when(inactive.getCoreName()).thenReturn("inactive");
+            final SolrCloudConnector connector = spy(new SolrCloudConnector(Collections.singleton(inactive), config, exec));
+            when(connector.createSolrClient()).thenReturn(solrClient);
+
+            connector.initialize();
+            try {
+                connector.getSolrClient(inactive);
+                fail("core must not be available if the replicas are not active");
+            } catch (SolrServerException expected) {
+                assertThat(expected.getCause().getCause(), Matchers.instanceOf(TimeoutException.class));
+            }
+            assertEquals(SolrCoreState.FAILED, connector.getCoreState("inactive"));
+            assertEquals(-1, connector.getActivationTime("inactive", TimeUnit.MILLISECONDS));
+            verify(zkStateReader).registerCollectionStateWatcher(eq("inactive"), any());
+            verify(zkStateReader).removeCollectionStateWatcher(eq("inactive"), any());
+            verify(inactive, never()).onCoreStarted(any());
+        } finally {
+            exec.shutdownNow();
+        }
+    }
+
+    /**
+     * Let async create/reload requests return their requestId, and the status-requests the provided state.
+     */
+    private static void mockAsyncRequests(CloudSolrClient solrClient, RequestStatusState state) throws Exception {
+        final Answer<NamedList<Object>> asyncResponse = invocation -> {
+            final NamedList<Object> response = new NamedList<>();
+            response.add("requestid", invocation.<CollectionAdminRequest.AsyncCollectionAdminRequest>getArgument(0).getAsyncId());
+            return response;
+        };
+        when(solrClient.request(any(CollectionAdminRequest.Create.class), eq(null))).thenAnswer(asyncResponse);
+        when(solrClient.request(any(CollectionAdminRequest.Reload.class), eq(null))).thenAnswer(asyncResponse);
+
+        final NamedList<Object> status = new NamedList<>();
+        status.add("state", state.getKey());
+        final NamedList<Object> statusResponse = new NamedList<>();
+        statusResponse.add("status", status);
+        when(solrClient.request(any(CollectionAdminRequest.RequestStatus.class), eq(null))).thenReturn(statusResponse);
+        when(solrClient.request(any(CollectionAdminRequest.DeleteStatus.class), eq(null))).thenReturn(new NamedList<>());
+    }
+
+    private static SolrCoreDescriptor mockCoreDescriptor(String coreName, Path conf) throws IOException {
+        final SolrCoreDescriptor coreDescriptor = mock(SolrCoreDescriptor.class);
+        when(coreDescriptor.getCoreName()).thenReturn(coreName);
+        doAnswer(invocation -> {
+            PathUtils.copyRecursive(conf, invocation.<Path>getArgument(0).resolve("conf"));
+            return null;
+        }).when(coreDescriptor).initCoreDirectory(any(), any());
+        return coreDescriptor;
+    }
+
+    /**
+     * Mock a ZkStateReader that reports all collections as active.
+     */
+    private static Stat zkStat(long zxid, int numChildren) {
+        final Stat stat = new Stat();
+        stat.setMzxid(zxid);
+        stat.setPzxid(zxid);
+        stat.setNumChildren(numChildren);
+        return stat;
+    }
+
+    private static ZkStateReader mockZkStateReader(SolrZkClient zk) {
+        final ZkStateReader zkStateReader = mock(ZkStateReader.class);
+        when(zkStateReader.getZkClient()).thenReturn(zk);
+        doAnswer(invocation -> {
+            final Replica replica = mock(Replica.class);
+            when(replica.isActive(any())).thenReturn(true);
+            final Slice slice = mock(Slice.class);
+            when(slice.getLeader()).thenReturn(replica);
+            when(slice.getReplicas()).thenReturn(Arrays.asList(replica, replica));
+            final DocCollection collection = mock(DocCollection.class);
+            when(collection.getActiveSlices()).thenReturn(Collections.singleton(slice));
+            invocation.<CollectionStateWatcher>getArgument(1).onStateChanged(Collections.singleton("node1"), collection);
+            return null;
+        }).when(zkStateReader).registerCollectionStateWatcher(any(), any());
+        return zkStateReader;
+    }
+}
@@ -16,38 +16,86 @@
 package io.redlink.solrlib.embedded;
 
 import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.redlink.solrlib.ShardRouter;
 import io.redlink.solrlib.SolrCoreContainer;
 import io.redlink.solrlib.SolrCoreDescriptor;
 import io.redlink.utils.PathUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexCommit;
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.index.IndexWriter;
 import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrRequest;
 import org.apache.solr.client.solrj.SolrServerException;
 import org.apache.solr.client.solrj.embedded.EmbeddedSolrServer;
-import org.apache.solr.client.solrj.request.CoreAdminRequest;
+import org.apache.solr.common.SolrException;
 import org.apache.solr.common.util.NamedList;
 import org.apache.solr.core.CoreContainer;
+import org.apache.solr.core.CoreDescriptor;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.core.SolrCoreInitializationException;
+import org.apache.solr.schema.IndexSchema;
+import org.apache.solr.update.SolrIndexWriter;
 
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Properties;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * SolrCoreContainer
  */
 public class EmbeddedCoreContainer extends SolrCoreContainer {
 
+    private static final String DEFAULT_CONFIG = "solrconfig.xml";
+    /** prefix of the solrconfig.xml generated by {@link #configureCore(SolrCoreDescriptor, Path, Properties)} */
+    private static final String GENERATED_CONFIG_PREFIX = "solrlib-";
+    /** first line of the solr.xml generated by {@link #writeSolrXml(Path, Path)} */
+    private static final String GENERATED_SOLR_XML_MARKER = "<!-- Generated by";
+
     private CoreContainer coreContainer = null;
     private Path solrHome;
     private boolean deleteOnShutdown;
+    private final int deployParallelism;
+    private final int transientCacheSize;
+    private final int coreLoadThreads;
+    private final int shardHandlerCorePoolSize;
+    private final int shardHandlerMaxPoolSize;
+    private final boolean jmxMetricsEnabled;
+    private final boolean inMemory;
+    private final Map<String, SolrClient> solrClients = new ConcurrentHashMap<>();
+    /** cores that are loaded lazily or may be evicted, see {@link #createSolrClient(String)} */
+    private final Set<String> onDemandCores = ConcurrentHashMap.newKeySet();
+    private final Map<String, Long> coreLoadTimes = new ConcurrentHashMap<>();
+    /** cores with {@link SolrCoreDescriptor#getNumShards() multiple shards}, each shard is a separate local core */
+    private final Map<String, ShardRouter> shardedCores = new ConcurrentHashMap<>();
+    /** executes the requests to the shards of a core in parallel, created on demand */
+    private ExecutorService shardExecutor = null;
 
     public EmbeddedCoreContainer(Set<SolrCoreDescriptor> coreDescriptors,
                                  EmbeddedCoreContainerConfiguration configuration) {
@@ -60,6 +108,13 @@ public class EmbeddedCoreContainer extends SolrCoreContainer {
         super(coreDescriptors, executorService);
         deleteOnShutdown = configuration.isDeleteOnShutdown();
         solrHome = configuration.getHome();
+        deployParallelism = configuration.getDeployParallelism();
+        transientCacheSize = configuration.getTransientCacheSize();
+        coreLoadThreads = configuration.getCoreLoadThreads();
+        shardHandlerCorePoolSize = configuration.getShardHandlerCorePoolSize();
+        shardHandlerMaxPoolSize = configuration.getShardHandlerMaxPoolSize();
+        jmxMetricsEnabled = configuration.isJmxMetricsEnabled();
+        inMemory = configuration.isInMemory();
     }
 
     @Override
@@ -91,77 +146,479 @@ public class EmbeddedCoreContainer extends SolrCoreContainer {
         final Path solrXml = absoluteSolrHome.resolve("solr.xml");
         if (!Files.exists(solrXml)) {
             log.info("no solr.xml found, creating new at {}", solrXml);
-            try (PrintStream writer = new PrintStream(Files.newOutputStream(solrXml, StandardOpenOption.CREATE))) {
-                writer.printf("<!-- Generated by %s on %tF %<tT -->%n", getClass().getSimpleName(), new Date());
-                writer.println("<solr>");
-                writer.printf("  <str name=\"%s\">%s</str>%n", "sharedLib", absoluteSolrHome.relativize(lib));
-                writer.println("</solr>");
-            }
+            writeSolrXml(solrXml, absoluteSolrHome.relativize(lib));
+        } else if (isGeneratedSolrXml(solrXml)) {
+            log.debug("found generated solr.xml, updating {}", solrXml);
+            writeSolrXml(solrXml, absoluteSolrHome.relativize(lib));
         } else {
-            log.trace("found solr.xml: {}", solrXml);
+            log.warn("Using existing solr.xml {}, ignoring the configured transientCacheSize, coreLoadThreads, " +
+                    "shard-handler pool-sizes and jmxMetricsEnabled", solrXml);
         }
 
-        for (SolrCoreDescriptor coreDescriptor : coreDescriptors) {
+        final Queue<SolrCoreDescriptor> deployedCores = new ConcurrentLinkedQueue<>();
+        deployCores(coreDescriptors, deployParallelism, coreDescriptor -> {
+            deployCore(coreDescriptor, absoluteSolrHome, lib);
+            deployedCores.add(coreDescriptor);
+        });
+
+        log.info("Starting {} in solr-home '{}'", getClass().getSimpleName(), absoluteSolrHome);
+        coreContainer = CoreContainer.createAndLoad(absoluteSolrHome, solrXml);
+
+        deployedCores.forEach(coreDescriptor -> {
             final String coreName = coreDescriptor.getCoreName();
-            if (availableCores.containsKey(coreName)) {
-                log.warn("CoreName-Clash: {} already initialized. Skipping {}", coreName, coreDescriptor.getClass());
-                continue;
+            try {
+                startCore(coreDescriptor, executorService);
+            } catch (IOException e) {
+                if (log.isDebugEnabled()) {
+                    log.error("Error initializing core {}", coreName, e);
+                }
+                markCoreFailed(coreName, e);
             }
-            final Path coreDir = absoluteSolrHome.resolve(coreName);
-            Files.createDirectories(coreDir);
-            coreDescriptor.initCoreDirectory(coreDir, lib);
+        });
+    }
 
-            final Properties coreProperties = new Properties();
-            final Path corePropertiesFile = coreDir.resolve("core.properties");
-            if (Files.exists(corePropertiesFile)) {
-                try (InputStream inStream = Files.newInputStream(corePropertiesFile, StandardOpenOption.CREATE)) {
-                    coreProperties.load(inStream);
+    /**
+     * @return {@code true} if the {@code solr.xml} was generated by {@link #writeSolrXml(Path, Path)}
+     *      (and not provided by the user), so it can be regenerated with the current configuration.
+     */
+    private static boolean isGeneratedSolrXml(Path solrXml) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(solrXml, StandardCharsets.UTF_8)) {
+            final String firstLine = reader.readLine();
+            return firstLine != null && firstLine.startsWith(GENERATED_SOLR_XML_MARKER);
+        }
+    }
+
+    /**
+     * Generate the {@code solr.xml}, rendering the settings of the {@link EmbeddedCoreContainerConfiguration}.
+     * Settings with a non-positive value are omitted, so the Solr default applies.
+     */
+    private void writeSolrXml(Path solrXml, Path sharedLib) throws IOException {
+        try (PrintStream writer = new PrintStream(Files.newOutputStream(solrXml), false, StandardCharsets.UTF_8.name())) {
+            writer.printf("%s %s on %tF %<tT -->%n", GENERATED_SOLR_XML_MARKER, getClass().getSimpleName(), new Date());
+            writer.println("<solr>");
+            writer.printf("  <str name=\"%s\">%s</str>%n", "sharedLib", sharedLib);
+            if (transientCacheSize > 0) {
+                writer.printf("  <int name=\"%s\">%d</int>%n", "transientCacheSize", transientCacheSize);
+            }
+            if (coreLoadThreads > 0) {
+                writer.printf("  <int name=\"%s\">%d</int>%n", "coreLoadThreads", coreLoadThreads);
+            }
+            if (shardHandlerCorePoolSize > 0 || shardHandlerMaxPoolSize > 0) {
+                writer.println("  <shardHandlerFactory name=\"shardHandlerFactory\" class=\"HttpShardHandlerFactory\">");
+                if (shardHandlerCorePoolSize > 0) {
+                    writer.printf("    <int name=\"%s\">%d</int>%n", "corePoolSize", shardHandlerCorePoolSize);
                 }
-                log.debug("core.properties for {} found, updating", coreName);
-            } else {
-                log.debug("Creating new core {} in {}", coreName, coreDir);
+                if (shardHandlerMaxPoolSize > 0) {
+                    writer.printf("    <int name=\"%s\">%d</int>%n", "maximumPoolSize", shardHandlerMaxPoolSize);
+                }
+                writer.println("  </shardHandlerFactory>");
             }
-            coreProperties.setProperty("name", coreName);
-            try (OutputStream outputStream = Files.newOutputStream(corePropertiesFile)) {
-                coreProperties.store(outputStream, null);
+            if (!jmxMetricsEnabled) {
+                // without an explicit jmx-reporter, Solr registers a default one
+                writer.println("  <metrics>");
+                writer.println("    <reporter name=\"jmx\" class=\"org.apache.solr.metrics.reporters.SolrJmxReporter\">");
+                writer.printf("      <bool name=\"%s\">%b</bool>%n", "enabled", false);
+                writer.println("    </reporter>");
+                writer.println("  </metrics>");
             }
+            writer.println("</solr>");
+        }
+    }
+
+    private void startCore(SolrCoreDescriptor coreDescriptor, ExecutorService executorService) throws IOException {
+        final String coreName = coreDescriptor.getCoreName();
+        if (coreDescriptor.isLoadOnStartup()) {
+            scheduleCoreInit(executorService, coreDescriptor, isNewCore(coreName));
+        } else {
+            deferCoreInit(executorService, coreDescriptor, () -> {
+                for (String localCore : getLocalCores(coreName)) {
+                    loadCore(coreContainer, localCore);
+                }
+                return isNewCore(coreName);
+            });
+        }
+    }
 
-            if (coreDescriptor.getNumShards() > 1 || coreDescriptor.getReplicationFactor() > 1) {
-                log.warn("Deploying {} to EmbeddedCoreContainer, ignoring config of shards={},replication={}", coreName,
-                        coreDescriptor.getNumShards(), coreDescriptor.getReplicationFactor());
+    /**
+     * A core is new if its index was never updated. Lazy cores and transient cores evicted from the
+     * transient cache are loaded for this.
+     */
+    private boolean isNewCore(String coreName) throws IOException {
+        final CoreContainer cc = coreContainer;
+        for (String localCore : getLocalCores(coreName)) {
+            // loads the core if required, and keeps it from being evicted from the transient cache while checking
+            try (SolrCore core = cc.getCore(localCore)) {
+                if (core == null) {
+                    continue;
+                }
+                // the commit-time is only set if there was an update
+                final boolean updated = core.withSearcher(searcher -> searcher.getIndexReader().getIndexCommit()
+                        .getUserData().containsKey(SolrIndexWriter.COMMIT_TIME_MSEC_KEY));
+                if (updated) {
+                    return false;
+                }
+            } catch (SolrCoreInitializationException e) {
+                // the index can't be checked, the init of the core reports the failure
+                log.debug("Core {} failed to load: {}", localCore, e.getMessage());
             }
+        }
+        return true;
+    }
+
+    /**
+     * @return the cores in the {@link CoreContainer} that hold the provided core: the core itself or its shards
+     */
+    private List<String> getLocalCores(String coreName) {
+        final ShardRouter router = shardedCores.get(coreName);
+        return router == null ? Collections.singletonList(coreName) : router.getShardNames(coreName);
+    }
 
-            availableCores.put(coreName, coreDescriptor);
+    /**
+     * Read the status of the provided core directly from the {@link SolrCore} and its current searcher.
+     * Cores that are not loaded (lazy or evicted transient cores, or cores that failed to load) are not loaded by this.
+     * For a core with multiple shards, the status is available per shard (see {@link ShardRouter#getShardName(String, int)}).
+     * @param coreName the core
+     * @return the status of the core
+     * @throws IllegalArgumentException if the core is unknown
+     * @throws IOException if the status could not be read from the index
+     */
+    public EmbeddedCoreStatus getCoreStatus(String coreName) throws IOException {
+        final CoreContainer cc = coreContainer;
+        Preconditions.checkState(Objects.nonNull(cc), "CoreContainer not initialized!");
+        if (!cc.isLoaded(coreName)) {
+            Preconditions.checkArgument(cc.getCoreDescriptor(coreName) != null || cc.getCoreInitFailures().containsKey(coreName),
+                    "Unknown core: %s", coreName);
+            return EmbeddedCoreStatus.notLoaded(coreName);
+        }
+        try (SolrCore core = cc.getCore(coreName)) {
+            if (core == null) {
+                // unloaded in the meantime
+                return EmbeddedCoreStatus.notLoaded(coreName);
+            }
+            return core.withSearcher(searcher -> {
+                final DirectoryReader reader = searcher.getIndexReader();
+                final IndexCommit commit = reader.getIndexCommit();
+                final String commitTime = commit.getUserData().get(SolrIndexWriter.COMMIT_TIME_MSEC_KEY);
+                return new EmbeddedCoreStatus(coreName, core.getStartTimeStamp(), reader.numDocs(), reader.maxDoc(),
+                        reader.getVersion(), commit.getGeneration(),
+                        commitTime == null ? null : new Date(Long.parseLong(commitTime)), core.getIndexSize());
+            });
         }
+    }
 
-        log.info("Starting {} in solr-home '{}'", getClass().getSimpleName(), absoluteSolrHome);
-        coreContainer = CoreContainer.createAndLoad(absoluteSolrHome, solrXml);
+    /**
+     * Memory used by the index of the provided core, if the container keeps the indexes
+     * {@link EmbeddedCoreContainerConfiguration#isInMemory() in memory}.
+     * @param coreName the core
+     * @return the size of the in-memory index in bytes, or {@code 0} if the core is not loaded or the indexes
+     *      are not kept in memory
+     * @throws IllegalArgumentException if the core is unknown
+     * @see EmbeddedCoreStatus#getIndexSize()
+     */
+    public long getMemoryUsage(String coreName) throws IOException {
+        long memoryUsage = 0;
+        for (String localCore : getLocalCores(coreName)) {
+            final EmbeddedCoreStatus status = getCoreStatus(localCore);
+            memoryUsage += inMemory && status.isLoaded() ? status.getIndexSize() : 0;
+        }
+        return memoryUsage;
+    }
 
-        availableCores.values().forEach(coreDescriptor -> {
-            final String coreName = coreDescriptor.getCoreName();
-            try (SolrClient solrClient = createSolrClient(coreName)) {
-                final NamedList<Object> coreStatus = CoreAdminRequest.getStatus(coreName, solrClient).getCoreStatus(coreName);
-                final NamedList<Object> indexStatus = coreStatus == null ? null : (NamedList<Object>)coreStatus.get("index");
-                final Object lastModified = indexStatus == null? null : indexStatus.get("lastModified");
-                // lastModified is null if there was never a update
-                scheduleCoreInit(executorService, coreDescriptor, lastModified == null);
-            } catch (SolrServerException | IOException e) {
-                if (log.isDebugEnabled()) {
-                    log.error("Error initializing core {}", coreName, e);
+    /**
+     * @return {@code true} if the indexes are kept in memory
+     * @see EmbeddedCoreContainerConfiguration#isInMemory()
+     */
+    public boolean isInMemory() {
+        return inMemory;
+    }
+
+    /**
+     * Load the core, if it is not resident (i.e. not yet loaded or evicted from the transient cache).
+     */
+    private void loadCore(CoreContainer cc, String coreName) {
+        if (!cc.isLoaded(coreName)) {
+            final long start = System.nanoTime();
+            try (SolrCore core = cc.getCore(coreName)) {
+                if (core == null) {
+                    throw new IllegalArgumentException("Unknown core: " + coreName);
+                }
+            }
+            final long loadTime = System.nanoTime() - start;
+            coreLoadTimes.put(coreName, loadTime);
+            log.debug("Loaded core {} in {}ms", coreName, TimeUnit.NANOSECONDS.toMillis(loadTime));
+        }
+    }
+
+    private void deployCore(SolrCoreDescriptor coreDescriptor, Path absoluteSolrHome, Path lib) throws IOException {
+        final String coreName = coreDescriptor.getCoreName();
+        final boolean onDemand = !coreDescriptor.isLoadOnStartup() || coreDescriptor.isTransient();
+        checkShardLayout(coreDescriptor, absoluteSolrHome);
+        if (coreDescriptor.getNumShards() > 1) {
+            final ShardRouter router = new ShardRouter(coreDescriptor.getNumShards());
+            log.debug("Deploying {} with {} local shards", coreName, router.getNumShards());
+            shardedCores.put(coreName, router);
+        } else {
+            shardedCores.remove(coreName);
+        }
+        for (String localCore : getLocalCores(coreName)) {
+            deployCore(coreDescriptor, localCore, absoluteSolrHome, lib);
+            setOnDemand(localCore, onDemand);
+        }
+        setOnDemand(coreName, onDemand);
+
+        if (coreDescriptor.getReplicationFactor() > 1) {
+            log.warn("Deploying {} to EmbeddedCoreContainer, ignoring config of replication={}", coreName,
+                    coreDescriptor.getReplicationFactor());
+        }
+    }
+
+    /**
+     * Refuse to deploy a core with a different number of shards than found in the solr-home: the existing
+     * (unsharded) core or shards would remain registered in the {@link CoreContainer} but never be used,
+     * and the documents would not be routed to the shards holding them.
+     */
+    private static void checkShardLayout(SolrCoreDescriptor coreDescriptor, Path absoluteSolrHome) {
+        final String coreName = coreDescriptor.getCoreName();
+        final int numShards = Math.max(coreDescriptor.getNumShards(), 1);
+        int existingShards = 0;
+        while (Files.exists(absoluteSolrHome.resolve(ShardRouter.getShardName(coreName, existingShards)).resolve("core.properties"))) {
+            existingShards++;
+        }
+        if (existingShards > 0) {
+            Preconditions.checkState(existingShards == numShards,
+                    "Core %s exists with %s shards in %s, can't deploy it with %s shard(s)",
+                    coreName, existingShards, absoluteSolrHome, numShards);
+        } else {
+            Preconditions.checkState(numShards == 1 || !Files.exists(absoluteSolrHome.resolve(coreName).resolve("core.properties")),
+                    "Core %s exists without shards in %s, can't deploy it with %s shards",
+                    coreName, absoluteSolrHome, numShards);
+        }
+    }
+
+    private void setOnDemand(String coreName, boolean onDemand) {
+        if (onDemand) {
+            onDemandCores.add(coreName);
+        } else {
+            onDemandCores.remove(coreName);
+        }
+    }
+
+    /**
+     * Deploy a local core, i.e. the core itself or one of its shards.
+     */
+    private void deployCore(SolrCoreDescriptor coreDescriptor, String coreName, Path absoluteSolrHome, Path lib) throws IOException {
+        final Path coreDir = absoluteSolrHome.resolve(coreName);
+        Files.createDirectories(coreDir);
+        coreDescriptor.initCoreDirectory(coreDir, lib);
+
+        final Properties coreProperties = new Properties();
+        final Path corePropertiesFile = coreDir.resolve("core.properties");
+        if (Files.exists(corePropertiesFile)) {
+            try (InputStream inStream = Files.newInputStream(corePropertiesFile, StandardOpenOption.CREATE)) {
+                coreProperties.load(inStream);
+            }
+            log.debug("core.properties for {} found, updating", coreName);
+        } else {
+            log.debug("Creating new core {} in {}", coreName, coreDir);
+        }
+        configureCore(coreDescriptor, coreDir.resolve("conf"), coreProperties);
+        final Path indexDir = coreDir.resolve(coreProperties.getProperty(CoreDescriptor.CORE_DATADIR, "data")).resolve("index");
+        // an in-memory index always starts empty
+        if (!inMemory && !hasIndex(indexDir)) {
+            if (coreDescriptor.getNumShards() > 1) {
+                // the documents of a template are not distributed across the shards
+                log.warn("Ignoring index-template of {}: not supported for multiple shards", coreName);
+            } else {
+                installIndexTemplate(coreDescriptor, indexDir);
+            }
+        }
+        coreProperties.setProperty("name", coreName);
+        coreProperties.setProperty(CoreDescriptor.CORE_LOADONSTARTUP, String.valueOf(coreDescriptor.isLoadOnStartup()));
+        coreProperties.setProperty(CoreDescriptor.CORE_TRANSIENT, String.valueOf(coreDescriptor.isTransient()));
+        try (OutputStream outputStream = Files.newOutputStream(corePropertiesFile)) {
+            coreProperties.store(outputStream, null);
+        }
+    }
+
+    /**
+     * Apply the storage-settings of the descriptor (and the in-memory mode) to the core. The {@code solrconfig.xml}
+     * of the bundle is left untouched, the changed config is written to a separate file that is referenced in the
+     * {@code core.properties}; it is removed again if the settings are reset.
+     */
+    private void configureCore(SolrCoreDescriptor coreDescriptor, Path confDir, Properties coreProperties) throws IOException {
+        final String coreName = coreDescriptor.getCoreName();
+        final String config = coreProperties.getProperty(CoreDescriptor.CORE_CONFIG, DEFAULT_CONFIG);
+        final String bundleConfig = StringUtils.removeStart(config, GENERATED_CONFIG_PREFIX);
+        final String directoryFactory = coreDescriptor.getDirectoryFactory();
+        final SolrCoreDescriptor.StoredFieldsCompression compression = coreDescriptor.getStoredFieldsCompression();
+        final double ramBufferSizeMB = coreDescriptor.getRamBufferSizeMB();
+
+        if (!inMemory && directoryFactory == null && compression == null && ramBufferSizeMB <= 0) {
+            if (!config.equals(bundleConfig)) {
+                log.debug("Storage-settings of core {} were reset, using {}", coreName, bundleConfig);
+                Files.deleteIfExists(confDir.resolve(config));
+                if (DEFAULT_CONFIG.equals(bundleConfig)) {
+                    coreProperties.remove(CoreDescriptor.CORE_CONFIG);
+                } else {
+                    coreProperties.setProperty(CoreDescriptor.CORE_CONFIG, bundleConfig);
+                }
+            }
+            return;
+        }
+
+        final SolrConfigEditor editor = SolrConfigEditor.read(confDir.resolve(bundleConfig));
+        if (inMemory) {
+            if (directoryFactory != null) {
+                log.warn("Ignoring directoryFactory {} of core {}: indexes are kept in memory", directoryFactory, coreName);
+            }
+            editor.setDirectoryFactory(SolrConfigEditor.RAM_DIRECTORY_FACTORY)
+                    .setLockType(SolrConfigEditor.SINGLE_LOCK_TYPE)
+                    .disableUpdateLog();
+        } else if (directoryFactory != null) {
+            editor.setDirectoryFactory(directoryFactory);
+        }
+        if (compression != null) {
+            editor.setCompressionMode(compression.name());
+        }
+        if (ramBufferSizeMB > 0) {
+            editor.setRamBufferSizeMB(ramBufferSizeMB);
+        }
+        editor.write(confDir.resolve(GENERATED_CONFIG_PREFIX + bundleConfig));
+        coreProperties.setProperty(CoreDescriptor.CORE_CONFIG, GENERATED_CONFIG_PREFIX + bundleConfig);
+        log.debug("Configured core {}: inMemory={}, directoryFactory={}, storedFieldsCompression={}, ramBufferSizeMB={}",
+                coreName, inMemory, directoryFactory, compression, ramBufferSizeMB);
+    }
+
+    private static boolean hasIndex(Path indexDir) throws IOException {
+        if (!Files.isDirectory(indexDir)) {
+            return false;
+        }
+        try (Stream<Path> files = Files.list(indexDir)) {
+            return files.anyMatch(file -> String.valueOf(file.getFileName()).startsWith(IndexFileNames.SEGMENTS));
+        }
+    }
+
+    /**
+     * Install the {@link SolrCoreDescriptor#visitIndexTemplate(SolrCoreDescriptor.IndexTemplateVisitor) index-template}
+     * of the core into its (empty) index-directory. Index-files are hard-linked if possible (Lucene never modifies
+     * a file once written), otherwise copied.
+     */
+    private void installIndexTemplate(SolrCoreDescriptor coreDescriptor, Path indexDir) throws IOException {
+        final String coreName = coreDescriptor.getCoreName();
+        final long start = System.nanoTime();
+        final boolean installed = coreDescriptor.visitIndexTemplate(templateDir -> {
+            final List<Path> templateFiles;
+            try (Stream<Path> files = Files.list(templateDir)) {
+                templateFiles = files
+                        .filter(Files::isRegularFile)
+                        .filter(file -> !IndexWriter.WRITE_LOCK_NAME.equals(String.valueOf(file.getFileName())))
+                        .collect(Collectors.toList());
+            }
+            Files.createDirectories(indexDir);
+            int linked = 0;
+            for (Path templateFile : templateFiles) {
+                if (linkOrCopy(templateFile, indexDir.resolve(templateFile.getFileName().toString()))) {
+                    linked++;
                 }
-                //noinspection ThrowableResultOfMethodCallIgnored
-                coreInitExceptions.put(coreName, e);
             }
+            log.debug("Installed index-template {} into {}: {} files linked, {} copied", templateDir, indexDir,
+                    linked, templateFiles.size() - linked);
         });
+        if (installed) {
+            log.info("Installed index-template for core {} in {}ms", coreName,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+    }
+
+    /**
+     * @return {@code true} if the file was hard-linked, {@code false} if it was copied
+     */
+    private static boolean linkOrCopy(Path source, Path target) throws IOException {
+        if (source.getFileSystem().equals(target.getFileSystem())) {
+            try {
+                Files.createLink(target, source);
+                return true;
+            } catch (UnsupportedOperationException | IOException e) {
+                // e.g. different file-stores, fall back to copy
+            }
+        }
+        Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+        return false;
+    }
+
+    /**
+     * Deploy the core to the solr-home and create it in the running {@link CoreContainer}.
+     * <strong>Note:</strong> libraries the core adds to the shared lib-directory are only picked up
+     * after a restart of the container.
+     */
+    @Override
+    protected synchronized void doRegisterCore(SolrCoreDescriptor coreDescriptor, ExecutorService executorService) throws IOException, SolrServerException {
+        final CoreContainer cc = coreContainer;
+        Preconditions.checkState(Objects.nonNull(cc), "CoreContainer not initialized!");
+        final String coreName = coreDescriptor.getCoreName();
+        final Path absoluteSolrHome = solrHome.toAbsolutePath();
+        deployCore(coreDescriptor, absoluteSolrHome, absoluteSolrHome.resolve("lib"));
+
+        invalidateSolrClient(coreName);
+        for (String localCore : getLocalCores(coreName)) {
+            // CoreContainer.create() refuses to create a core in a directory with a core.properties,
+            // so the properties are passed as parameters and written again by the CoreContainer
+            final Path coreDir = absoluteSolrHome.resolve(localCore);
+            final Path corePropertiesFile = coreDir.resolve("core.properties");
+            final Properties coreProperties = new Properties();
+            try (InputStream inStream = Files.newInputStream(corePropertiesFile)) {
+                coreProperties.load(inStream);
+            }
+            Files.delete(corePropertiesFile);
+            final Map<String, String> parameters = new HashMap<>();
+            coreProperties.stringPropertyNames().forEach(key -> parameters.put(key, coreProperties.getProperty(key)));
+            parameters.remove("name");
+
+            invalidateSolrClient(localCore);
+            try {
+                cc.create(localCore, coreDir, parameters, false);
+            } catch (SolrException e) {
+                throw new SolrServerException("Creating core " + localCore + " failed", e);
+            }
+        }
+        startCore(coreDescriptor, executorService);
+    }
+
+    /**
+     * Unload the core from the running {@link CoreContainer} and delete its directory (including the index)
+     * from the solr-home.
+     */
+    @Override
+    protected synchronized void doUnregisterCore(String coreName) throws SolrServerException {
+        final CoreContainer cc = coreContainer;
+        Preconditions.checkState(Objects.nonNull(cc), "CoreContainer not initialized!");
+        try {
+            for (String localCore : getLocalCores(coreName)) {
+                try {
+                    cc.unload(localCore, true, true, true);
+                } catch (SolrException e) {
+                    throw new SolrServerException("Unloading core " + localCore + " failed", e);
+                } finally {
+                    invalidateSolrClient(localCore);
+                }
+            }
+        } finally {
+            shardedCores.remove(coreName);
+            invalidateSolrClient(coreName);
+        }
     }
 
     @Override
     public final void shutdown() throws IOException {
         Preconditions.checkState(Objects.nonNull(this.coreContainer), "Not initialized!");
+        super.shutdown();
 
         try {
             final CoreContainer cc = this.coreContainer;
             this.coreContainer = null;
+            solrClients.clear();
+            coreLoadTimes.clear();
+            shutdownShardExecutor();
             cc.shutdown();
         } catch (final Exception t) {
             log.error("Unexpected Error during CoreContainer.shutdown(): {}", t.getMessage());
@@ -174,16 +631,92 @@ public class EmbeddedCoreContainer extends SolrCoreContainer {
         }
     }
 
+    /**
+     * Returns the (cached) SolrClient for the provided core. There is one client per core, which is shared across
+     * all callers and threads: it does not hold any per-request state and resolves the {@link org.apache.solr.core.SolrCore}
+     * on every request, so it stays valid if the core is reloaded. {@link SolrClient#close()} is a no-op.
+     * For a core with multiple shards, the client distributes updates and merges search results,
+     * see {@link ShardedEmbeddedSolrServer}.
+     */
     @Override
     protected SolrClient createSolrClient(String coreName) {
-        Preconditions.checkState(Objects.nonNull(coreContainer), "CoreContainer not initialized!");
+        final CoreContainer cc = coreContainer;
+        Preconditions.checkState(Objects.nonNull(cc), "CoreContainer not initialized!");
         Preconditions.checkArgument(StringUtils.isNotBlank(coreName));
-        return new EmbeddedSolrServer(coreContainer, coreName) {
-            @Override
-            public void close() throws IOException {
-                //nop
-            }
-        };
+        final ShardRouter router = shardedCores.get(coreName);
+        if (router == null) {
+            return solrClients.computeIfAbsent(coreName, name -> createCoreClient(cc, name));
+        }
+        final List<String> shardNames = router.getShardNames(coreName);
+        final ExecutorService executor = getShardExecutor();
+        return solrClients.computeIfAbsent(coreName, name -> new ShardedEmbeddedSolrServer(
+                shardNames.stream().map(shard -> createCoreClient(cc, shard)).collect(Collectors.toList()),
+                router, () -> getSchema(cc, shardNames.get(0)), executor));
+    }
+
+    private SolrClient createCoreClient(CoreContainer cc, String coreName) {
+        return onDemandCores.contains(coreName)
+                ? new OnDemandEmbeddedSolrServer(cc, coreName) : new SharedEmbeddedSolrServer(cc, coreName);
+    }
+
+    private IndexSchema getSchema(CoreContainer cc, String coreName) {
+        loadCore(cc, coreName);
+        try (SolrCore core = cc.getCore(coreName)) {
+            Preconditions.checkState(Objects.nonNull(core), "Unknown core: %s", coreName);
+            return core.getLatestSchema();
+        }
+    }
+
+    private synchronized ExecutorService getShardExecutor() {
+        if (shardExecutor == null) {
+            shardExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+                    new ThreadFactoryBuilder().setNameFormat("solrlib-shard-%d").setDaemon(true).build());
+        }
+        return shardExecutor;
+    }
+
+    private synchronized void shutdownShardExecutor() {
+        if (shardExecutor != null) {
+            shardExecutor.shutdownNow();
+            shardExecutor = null;
+        }
+    }
+
+    /**
+     * @return the names of all cores that are currently loaded (resident) in the {@link CoreContainer}.
+     *      Lazy cores that were never requested and transient cores that were evicted are not resident.
+     */
+    public Collection<String> getResidentCores() {
+        final CoreContainer cc = coreContainer;
+        Preconditions.checkState(Objects.nonNull(cc), "CoreContainer not initialized!");
+        return cc.getLoadedCoreNames();
+    }
+
+    /**
+     * Check if the provided core is currently loaded (resident) in the {@link CoreContainer}.
+     */
+    @Override
+    public boolean isCoreResident(String coreName) {
+        final CoreContainer cc = coreContainer;
+        return cc != null && getLocalCores(coreName).stream().allMatch(cc::isLoaded);
+    }
+
+    /**
+     * @param coreName the core
+     * @param unit the time-unit of the result
+     * @return the time it took to (re-)load the provided lazy or transient core on its last access,
+     *      or {@code -1} if the core was not loaded on demand (yet).
+     */
+    public long getCoreLoadTime(String coreName, TimeUnit unit) {
+        final Long loadTime = coreLoadTimes.get(coreName);
+        return loadTime == null ? -1 : unit.convert(loadTime, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Remove the cached SolrClient for the provided core, e.g. after the core was unloaded.
+     */
+    protected void invalidateSolrClient(String coreName) {
+        solrClients.remove(coreName);
     }
 
     /**
@@ -203,4 +736,39 @@ public class EmbeddedCoreContainer extends SolrCoreContainer {
             throw new IllegalStateException("Could not retrieve CoreContainer", e);
         }
     }
+
+    /**
+     * {@link EmbeddedSolrServer} shared by all callers, {@link #close()} is a no-op.
+     */
+    private static class SharedEmbeddedSolrServer extends EmbeddedSolrServer {
+        private SharedEmbeddedSolrServer(CoreContainer coreContainer, String coreName) {
+            super(coreContainer, coreName);
+        }
+
+        @Override
+        public void close() throws IOException {
+            //nop
+        }
+    }
+
+    /**
+     * {@link SharedEmbeddedSolrServer} for lazy and transient cores, (re-)loads the core if required
+     * to keep track of the load-time.
+     */
+    private class OnDemandEmbeddedSolrServer extends SharedEmbeddedSolrServer {
+        private final CoreContainer coreContainer;
+        private final String coreName;
+
+        private OnDemandEmbeddedSolrServer(CoreContainer coreContainer, String coreName) {
+            super(coreContainer, coreName);
+            this.coreContainer = coreContainer;
+            this.coreName = coreName;
+        }
+
+        @Override
+        public NamedList<Object> request(SolrRequest request, String collection) throws SolrServerException, IOException {
+            loadCore(coreContainer, collection == null ? coreName : collection);
+            return super.request(request, collection);
+        }
+    }
 }
@@ -36,6 +36,54 @@ public class EmbeddedCoreContainerConfiguration {
      */
     private boolean deleteOnShutdown = false;
 
+    /**
+     * Max. number of cores to deploy (unpack) concurrently during init.
+     */
+    private int deployParallelism = 1;
+
+    /**
+     * Max. number of {@link io.redlink.solrlib.SolrCoreDescriptor#isTransient() transient} cores to keep loaded,
+     * the least recently used core is unloaded when the limit is exceeded.
+     * A value {@code <= 0} uses the Solr default (unlimited).
+     * Only applies when the {@code solr.xml} is generated.
+     */
+    private int transientCacheSize = -1;
+
+    /**
+     * Number of threads the {@link org.apache.solr.core.CoreContainer} uses to load cores on startup,
+     * e.g. the number of available processors when many cores are loaded.
+     * A value {@code <= 0} uses the Solr default.
+     * Only applies when the {@code solr.xml} is generated.
+     */
+    private int coreLoadThreads = -1;
+
+    /**
+     * Core-size of the thread-pool used by the shard-handler for (distributed) sub-requests.
+     * A value {@code <= 0} uses the Solr default.
+     * Only applies when the {@code solr.xml} is generated.
+     */
+    private int shardHandlerCorePoolSize = -1;
+
+    /**
+     * Max. size of the thread-pool used by the shard-handler for (distributed) sub-requests.
+     * A value {@code <= 0} uses the Solr default.
+     * Only applies when the {@code solr.xml} is generated.
+     */
+    private int shardHandlerMaxPoolSize = -1;
+
+    /**
+     * Whether or not Solr registers its metrics as JMX MBeans (the Solr default if a MBeanServer is available).
+     * Only applies when the {@code solr.xml} is generated.
+     */
+    private boolean jmxMetricsEnabled = true;
+
+    /**
+     * Keep the indexes of all cores in memory: cores are deployed with a {@code RAMDirectoryFactory} and without
+     * update-log, so nothing but the configuration is written to disk. Intended for short-lived, ephemeral indexes,
+     * best combined with a temporary {@link #home} (or {@link #deleteOnShutdown}).
+     */
+    private boolean inMemory = false;
+
     /**
      * @return the solr-home directory
      * @see #home
@@ -67,4 +115,116 @@ public class EmbeddedCoreContainerConfiguration {
     public void setDeleteOnShutdown(boolean deleteOnShutdown) {
         this.deleteOnShutdown = deleteOnShutdown;
     }
+
+    /**
+     * @return max. number of cores to deploy concurrently
+     * @see #deployParallelism
+     */
+    public int getDeployParallelism() {
+        return deployParallelism;
+    }
+
+    /**
+     * @param deployParallelism max. number of cores to deploy concurrently
+     * @see #deployParallelism
+     */
+    public void setDeployParallelism(int deployParallelism) {
+        this.deployParallelism = deployParallelism;
+    }
+
+    /**
+     * @return max. number of transient cores to keep loaded
+     * @see #transientCacheSize
+     */
+    public int getTransientCacheSize() {
+        return transientCacheSize;
+    }
+
+    /**
+     * @param transientCacheSize max. number of transient cores to keep loaded
+     * @see #transientCacheSize
+     */
+    public void setTransientCacheSize(int transientCacheSize) {
+        this.transientCacheSize = transientCacheSize;
+    }
+
+    /**
+     * @return number of threads to load cores on startup
+     * @see #coreLoadThreads
+     */
+    public int getCoreLoadThreads() {
+        return coreLoadThreads;
+    }
+
+    /**
+     * @param coreLoadThreads number of threads to load cores on startup
+     * @see #coreLoadThreads
+     */
+    public void setCoreLoadThreads(int coreLoadThreads) {
+        this.coreLoadThreads = coreLoadThreads;
+    }
+
+    /**
+     * @return core-size of the shard-handler thread-pool
+     * @see #shardHandlerCorePoolSize
+     */
+    public int getShardHandlerCorePoolSize() {
+        return shardHandlerCorePoolSize;
+    }
+
+    /**
+     * @param shardHandlerCorePoolSize core-size of the shard-handler thread-pool
+     * @see #shardHandlerCorePoolSize
+     */
+    public void setShardHandlerCorePoolSize(int shardHandlerCorePoolSize) {
+        this.shardHandlerCorePoolSize = shardHandlerCorePoolSize;
+    }
+
+    /**
+     * @return max. size of the shard-handler thread-pool
+     * @see #shardHandlerMaxPoolSize
+     */
+    public int getShardHandlerMaxPoolSize() {
+        return shardHandlerMaxPoolSize;
+    }
+
+    /**
+     * @param shardHandlerMaxPoolSize max. size of the shard-handler thread-pool
+     * @see #shardHandlerMaxPoolSize
+     */
+    public void setShardHandlerMaxPoolSize(int shardHandlerMaxPoolSize) {
+        this.shardHandlerMaxPoolSize = shardHandlerMaxPoolSize;
+    }
+
+    /**
+     * @return flag to indicate if metrics are registered as JMX MBeans
+     * @see #jmxMetricsEnabled
+     */
+    public boolean isJmxMetricsEnabled() {
+        return jmxMetricsEnabled;
+    }
+
+    /**
+     * @param jmxMetricsEnabled register metrics as JMX MBeans?
+     * @see #jmxMetricsEnabled
+     */
+    public void setJmxMetricsEnabled(boolean jmxMetricsEnabled) {
+        this.jmxMetricsEnabled = jmxMetricsEnabled;
+    }
+
+    /**
+     * @return flag to indicate if the indexes are kept in memory
+     * @see #inMemory
+     */
+    public boolean isInMemory() {
+        return inMemory;
+    }
+
+    /**
+     * @param inMemory keep the indexes in memory?
+     * @see #inMemory
+     */
+    public void setInMemory(boolean inMemory) {
+        this.inMemory = inMemory;
+    }
 }
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2017 redlink GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.redlink.solrlib.embedded;
+
+import java.util.Date;
+
+/**
+ * Status of a core in the {@link EmbeddedCoreContainer}, read directly from the {@link org.apache.solr.core.SolrCore}
+ * and its current searcher.
+ *
+ * @see EmbeddedCoreContainer#getCoreStatus(String)
+ */
+public final class EmbeddedCoreStatus {
+
+    private final String coreName;
+    private final boolean loaded;
+    private final Date startTime;
+    private final int numDocs;
+    private final int maxDoc;
+    private final long indexVersion;
+    private final long generation;
+    private final Date lastModified;
+    private final long indexSize;
+
+    EmbeddedCoreStatus(String coreName, Date startTime, int numDocs, int maxDoc, long indexVersion,
+                       long generation, Date lastModified, long indexSize) {
+        this.coreName = coreName;
+        this.loaded = true;
+        this.startTime = startTime;
+        this.numDocs = numDocs;
+        this.maxDoc = maxDoc;
+        this.indexVersion = indexVersion;
+        this.generation = generation;
+        this.lastModified = lastModified;
+        this.indexSize = indexSize;
+    }
+
+    private EmbeddedCoreStatus(String coreName) {
+        this.coreName = coreName;
+        this.loaded = false;
+        this.startTime = null;
+        this.numDocs = -1;
+        this.maxDoc = -1;
+        this.indexVersion = -1;
+        this.generation = -1;
+        this.lastModified = null;
+        this.indexSize = -1;
+    }
+
+    /**
+     * Status of a core that is not loaded (lazy or evicted transient core), no index-information is available.
+     */
+    static EmbeddedCoreStatus notLoaded(String coreName) {
+        return new EmbeddedCoreStatus(coreName);
+    }
+
+    public String getCoreName() {
+        return coreName;
+    }
+
+    /**
+     * @return {@code true} if the core is loaded, otherwise no index-information is available
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * @return the time the core was (last) loaded, or {@code null} if the core is not loaded
+     */
+    public Date getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * @return the number of (live) documents in the index, or {@code -1} if the core is not loaded
+     */
+    public int getNumDocs() {
+        return numDocs;
+    }
+
+    /**
+     * @return the number of documents in the index, including deleted ones, or {@code -1} if the core is not loaded
+     */
+    public int getMaxDoc() {
+        return maxDoc;
+    }
+
+    /**
+     * @return the version of the index of the current searcher, or {@code -1} if the core is not loaded
+     */
+    public long getIndexVersion() {
+        return indexVersion;
+    }
+
+    /**
+     * @return the generation of the last commit, or {@code -1} if the core is not loaded
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * @return the time of the last commit, or {@code null} if the index was never updated (or the core is not loaded)
+     */
+    public Date getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * @return the size of the index in bytes (on disk, or in memory for an in-memory index),
+     *      or {@code -1} if the core is not loaded
+     */
+    public long getIndexSize() {
+        return indexSize;
+    }
+
+    @Override
+    public String toString() {
+        return "EmbeddedCoreStatus{" +
+                "coreName='" + coreName + '\'' +
+                ", loaded=" + loaded +
+                ", numDocs=" + numDocs +
+                ", indexVersion=" + indexVersion +
+                ", lastModified=" + lastModified +
+                ", indexSize=" + indexSize +
+                '}';
+    }
+}
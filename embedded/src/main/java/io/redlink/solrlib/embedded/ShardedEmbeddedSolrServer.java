@@ -0,0 +1,531 @@
+/*
+ * Copyright 2017 redlink GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.redlink.solrlib.embedded;
+
+import io.redlink.solrlib.ShardRouter;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.request.IsUpdateRequest;
+import org.apache.solr.client.solrj.request.QueryRequest;
+import org.apache.solr.client.solrj.request.UpdateRequest;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.CursorMarkParams;
+import org.apache.solr.common.params.FacetParams;
+import org.apache.solr.common.params.GroupParams;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.params.StatsParams;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
+import org.apache.solr.common.util.StrUtils;
+import org.apache.solr.schema.IndexSchema;
+import org.apache.solr.schema.SchemaField;
+import org.apache.solr.search.QueryParsing;
+import org.apache.solr.search.SyntaxError;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * SolrClient for a core with {@link io.redlink.solrlib.SolrCoreDescriptor#getNumShards() multiple shards} in the
+ * {@link EmbeddedCoreContainer}: each shard is a separate local core, there is no distributed search without http.
+ * <ul>
+ *     <li>updates are routed to the shards by the {@link ShardRouter}</li>
+ *     <li>queries ({@code /select} and {@code /query}) are executed on all shards in parallel, the results are
+ *          merged: documents (sorted by score or by fields that are stored or have docValues), {@code numFound},
+ *          {@code maxScore}, the counts of {@code facet.field} and {@code facet.query} and highlighting.
+ *          Queries using grouping, stats, range- or pivot-facets, json-facets or cursors are rejected.</li>
+ *     <li>real-time get ({@code /get}) routes the requested ids to their shards and concatenates the documents</li>
+ *     <li>other query-handlers (e.g. {@code /terms}, {@code /mlt} or {@code /suggest}) are rejected</li>
+ *     <li>all other requests (e.g. ping or the Config API) are sent to all shards, the response of the first
+ *          shard is returned.</li>
+ * </ul>
+ * {@link #close()} is a no-op.
+ */
+final class ShardedEmbeddedSolrServer extends SolrClient {
+
+    private static final String SCORE = "score";
+    private static final int DEFAULT_ROWS = 10;
+    private static final int DEFAULT_FACET_LIMIT = 100;
+    private static final String IDS = "ids";
+    private static final String JSON_FACET = "json.facet";
+
+    private final List<SolrClient> shards;
+    private final ShardRouter router;
+    private final Supplier<IndexSchema> schema;
+    private final ExecutorService executorService;
+
+    /**
+     * @param schema the (current) schema of the shards, used to route updates by the uniqueKey and to validate
+     *      the sort of queries
+     */
+    ShardedEmbeddedSolrServer(List<SolrClient> shards, ShardRouter router, Supplier<IndexSchema> schema,
+                              ExecutorService executorService) {
+        this.shards = shards;
+        this.router = router;
+        this.schema = schema;
+        this.executorService = executorService;
+    }
+
+    @Override
+    public NamedList<Object> request(SolrRequest request, String collection) throws SolrServerException, IOException {
+        if (request instanceof UpdateRequest) {
+            return update((UpdateRequest) request);
+        } else if (request instanceof IsUpdateRequest) {
+            throw new SolrServerException("Unsupported update-request for sharded core: " + request.getClass().getSimpleName()
+                    + ", use UpdateRequest instead");
+        } else if (request instanceof QueryRequest) {
+            // QueryRequest#getPath() returns the request-handler (qt) if it is a path
+            final String path = request.getPath();
+            if ("/select".equals(path) || "/query".equals(path)) {
+                return query(request);
+            } else if ("/get".equals(path)) {
+                return realtimeGet((QueryRequest) request);
+            }
+            throw new SolrServerException("Unsupported request-handler for sharded core: " + path);
+        } else {
+            return execute(shards.size(), shard -> request).get(0);
+        }
+    }
+
+    private NamedList<Object> update(UpdateRequest request) throws SolrServerException, IOException {
+        final List<UpdateRequest> shardRequests = router.route(request, getUniqueKey(schema.get()));
+        NamedList<Object> response = null;
+        for (NamedList<Object> shardResponse : execute(shards.size(), shardRequests::get)) {
+            if (response == null) {
+                response = shardResponse;
+            }
+        }
+        return response != null ? response : new NamedList<>();
+    }
+
+    @SuppressWarnings("unchecked")
+    private NamedList<Object> query(SolrRequest request) throws SolrServerException, IOException {
+        final SolrParams params = request.getParams() == null ? new ModifiableSolrParams() : request.getParams();
+        final int start = params.getInt(CommonParams.START, 0);
+        final int rows = params.getInt(CommonParams.ROWS, DEFAULT_ROWS);
+        final List<SortField> sort = SortField.parse(params.get(CommonParams.SORT));
+        final boolean facet = params.getBool(FacetParams.FACET, false);
+        checkSupported(params, facet);
+
+        // every shard has to provide the top start+rows documents, including the fields required for sorting
+        final ModifiableSolrParams shardParams = new ModifiableSolrParams(params);
+        shardParams.set(CommonParams.START, 0);
+        shardParams.set(CommonParams.ROWS, start + rows);
+        final Set<String> addedFields = new LinkedHashSet<>();
+        final String fl = params.get(CommonParams.FL);
+        final Set<String> fields = new LinkedHashSet<>();
+        if (StringUtils.isNotBlank(fl)) {
+            for (String field : StringUtils.split(fl, ", ")) {
+                fields.add(field);
+            }
+        }
+        if (fields.isEmpty()) {
+            fields.add("*");
+        }
+        final IndexSchema indexSchema = sort.stream().anyMatch(f -> !SCORE.equals(f.field)) ? schema.get() : null;
+        for (SortField sortField : sort) {
+            if (fields.contains(sortField.field)) {
+                continue;
+            }
+            if (SCORE.equals(sortField.field)) {
+                addedFields.add(sortField.field);
+            } else {
+                // the documents are merged by the returned values of the sort-fields
+                final SchemaField schemaField = indexSchema.getFieldOrNull(sortField.field);
+                if (schemaField == null || !(schemaField.stored() || schemaField.hasDocValues())) {
+                    throw new SolrServerException("Unsupported sort for sharded core, field " + sortField.field
+                            + " is neither stored nor has docValues");
+                }
+                if (!fields.contains("*") || !(schemaField.stored() || schemaField.useDocValuesAsStored())) {
+                    addedFields.add(sortField.field);
+                }
+            }
+        }
+        if (!addedFields.isEmpty()) {
+            shardParams.set(CommonParams.FL, StringUtils.join(fields, ',') + "," + StringUtils.join(addedFields, ','));
+        }
+        final Map<String, String> facetFields = facet ? parseFacetFields(params) : Collections.emptyMap();
+        if (!facetFields.isEmpty()) {
+            // a value can be missing in the top-n or below the mincount of a single shard but not of the merged
+            // counts, so every shard has to provide all counts. offset, limit, sort and mincount are applied
+            // after merging.
+            shardParams.set(FacetParams.FACET_OFFSET, 0);
+            shardParams.set(FacetParams.FACET_LIMIT, -1);
+            shardParams.set(FacetParams.FACET_MINCOUNT, 0);
+            for (String field : new LinkedHashSet<>(facetFields.values())) {
+                for (String param : Arrays.asList(FacetParams.FACET_OFFSET, FacetParams.FACET_LIMIT, FacetParams.FACET_MINCOUNT)) {
+                    shardParams.remove("f." + field + "." + param);
+                }
+            }
+        }
+
+        final QueryRequest shardRequest = new QueryRequest(shardParams, request.getMethod());
+        shardRequest.setPath(request.getPath());
+        final List<NamedList<Object>> shardResponses = execute(shards.size(), shard -> shardRequest);
+
+        final NamedList<Object> response = shardResponses.get(0).clone();
+        final List<SolrDocumentList> results = new ArrayList<>();
+        final List<NamedList<Object>> facetCounts = new ArrayList<>();
+        final NamedList<Object> highlighting = new SimpleOrderedMap<>();
+        for (NamedList<Object> shardResponse : shardResponses) {
+            final SolrDocumentList result = (SolrDocumentList) shardResponse.get("response");
+            if (result != null) {
+                results.add(result);
+            }
+            final NamedList<Object> shardFacetCounts = (NamedList<Object>) shardResponse.get("facet_counts");
+            if (shardFacetCounts != null) {
+                facetCounts.add(shardFacetCounts);
+            }
+            final NamedList<Object> shardHighlighting = (NamedList<Object>) shardResponse.get("highlighting");
+            if (shardHighlighting != null) {
+                highlighting.addAll(shardHighlighting);
+            }
+        }
+        if (!results.isEmpty()) {
+            response.remove("response");
+            response.add("response", mergeResults(results, sort, start, rows, addedFields));
+        }
+        if (!facetCounts.isEmpty()) {
+            response.remove("facet_counts");
+            response.add("facet_counts", mergeFacetCounts(facetCounts, facetFields, params));
+        }
+        if (response.get("highlighting") != null) {
+            response.remove("highlighting");
+            response.add("highlighting", highlighting);
+        }
+        return response;
+    }
+
+    /**
+     * Reject the search components that can't be merged from the responses of the shards.
+     */
+    private static void checkSupported(SolrParams params, boolean facet) throws SolrServerException {
+        final List<String> unsupported = new ArrayList<>();
+        if (params.getBool(GroupParams.GROUP, false)) {
+            unsupported.add(GroupParams.GROUP);
+        }
+        if (params.getBool(StatsParams.STATS, false)) {
+            unsupported.add(StatsParams.STATS);
+        }
+        if (facet && params.get(FacetParams.FACET_RANGE) != null) {
+            unsupported.add(FacetParams.FACET_RANGE);
+        }
+        if (facet && params.get(FacetParams.FACET_PIVOT) != null) {
+            unsupported.add(FacetParams.FACET_PIVOT);
+        }
+        if (params.get(JSON_FACET) != null) {
+            unsupported.add(JSON_FACET);
+        }
+        if (params.get(CursorMarkParams.CURSOR_MARK_PARAM) != null) {
+            unsupported.add(CursorMarkParams.CURSOR_MARK_PARAM);
+        }
+        if (!unsupported.isEmpty()) {
+            throw new SolrServerException("Unsupported parameters for sharded core: " + unsupported);
+        }
+    }
+
+    /**
+     * Real-time get: the requested {@code id}s and {@code ids} are routed to their shards, the documents
+     * returned by the shards are concatenated.
+     */
+    private NamedList<Object> realtimeGet(QueryRequest request) throws SolrServerException, IOException {
+        final SolrParams params = request.getParams() == null ? new ModifiableSolrParams() : request.getParams();
+        final List<String> allIds = new ArrayList<>();
+        final String[] id = params.getParams(CommonParams.ID);
+        if (id != null) {
+            allIds.addAll(Arrays.asList(id));
+        }
+        final String[] ids = params.getParams(IDS);
+        if (ids != null) {
+            for (String idList : ids) {
+                allIds.addAll(StrUtils.splitSmart(idList, ",", true));
+            }
+        }
+        if (allIds.isEmpty() || (ids == null && allIds.size() == 1)) {
+            // a single id=foo is answered with a single "doc", so the request can be sent to its shard as is
+            final int shard = allIds.isEmpty() ? 0 : router.getShard(allIds.get(0));
+            return shards.get(shard).request(request);
+        }
+
+        final List<List<String>> shardIds = new ArrayList<>(shards.size());
+        for (int shard = 0; shard < shards.size(); shard++) {
+            shardIds.add(new ArrayList<>());
+        }
+        allIds.forEach(i -> shardIds.get(router.getShard(i)).add(i));
+        final List<NamedList<Object>> shardResponses = execute(shards.size(), shard -> {
+            if (shardIds.get(shard).isEmpty()) {
+                return null;
+            }
+            final ModifiableSolrParams shardParams = new ModifiableSolrParams(params);
+            shardParams.remove(CommonParams.ID);
+            shardParams.set(IDS, shardIds.get(shard).stream()
+                    .map(i -> i.replace("\\", "\\\\").replace(",", "\\,"))
+                    .collect(Collectors.joining(",")));
+            return new QueryRequest(shardParams, request.getMethod());
+        });
+
+        final NamedList<Object> response = shardResponses.get(0).clone();
+        final SolrDocumentList docs = new SolrDocumentList();
+        for (NamedList<Object> shardResponse : shardResponses) {
+            final SolrDocumentList result = (SolrDocumentList) shardResponse.get("response");
+            if (result != null) {
+                docs.addAll(result);
+            }
+        }
+        docs.setNumFound(docs.size());
+        docs.setStart(0);
+        response.remove("response");
+        response.add("response", docs);
+        return response;
+    }
+
+    private static String getUniqueKey(IndexSchema indexSchema) throws SolrServerException {
+        final SchemaField uniqueKey = indexSchema.getUniqueKeyField();
+        if (uniqueKey == null) {
+            throw new SolrServerException("Sharded core has no uniqueKey, required for sharding");
+        }
+        return uniqueKey.getName();
+    }
+
+    private static SolrDocumentList mergeResults(List<SolrDocumentList> results, List<SortField> sort,
+                                                 int start, int rows, Set<String> addedFields) {
+        final SolrDocumentList merged = new SolrDocumentList();
+        final List<SolrDocument> docs = new ArrayList<>();
+        long numFound = 0;
+        Float maxScore = null;
+        for (SolrDocumentList result : results) {
+            numFound += result.getNumFound();
+            if (result.getMaxScore() != null) {
+                maxScore = maxScore == null ? result.getMaxScore() : Math.max(maxScore, result.getMaxScore());
+            }
+            docs.addAll(result);
+        }
+        // the sort is stable, so the order of the shards breaks ties
+        docs.sort(SortField.comparator(sort));
+        for (int i = start; i < docs.size() && i < start + rows; i++) {
+            final SolrDocument doc = docs.get(i);
+            addedFields.forEach(doc::removeFields);
+            merged.add(doc);
+        }
+        merged.setNumFound(numFound);
+        merged.setStart(start);
+        merged.setMaxScore(maxScore);
+        return merged;
+    }
+
+    /**
+     * @return the field of each {@code facet.field}, by the key used in the response
+     */
+    private static Map<String, String> parseFacetFields(SolrParams params) throws SolrServerException {
+        final Map<String, String> facetFields = new LinkedHashMap<>();
+        final String[] fields = params.getParams(FacetParams.FACET_FIELD);
+        if (fields != null) {
+            for (String field : fields) {
+                try {
+                    final SolrParams localParams = QueryParsing.getLocalParams(field, params);
+                    if (localParams == null) {
+                        facetFields.put(field, field);
+                    } else {
+                        final String name = localParams.get(CommonParams.VALUE);
+                        facetFields.put(localParams.get(CommonParams.OUTPUT_KEY, name), name);
+                    }
+                } catch (SyntaxError e) {
+                    throw new SolrServerException("Invalid facet.field " + field, e);
+                }
+            }
+        }
+        return facetFields;
+    }
+
+    /**
+     * Sum up the counts of the shards and apply the (per-field) {@code facet.offset}, {@code facet.limit},
+     * {@code facet.sort} and {@code facet.mincount} to the merged counts of the {@code facet.field}s. The count
+     * of documents without a value ({@code facet.missing}) is added last.
+     */
+    @SuppressWarnings("unchecked")
+    private static NamedList<Object> mergeFacetCounts(List<NamedList<Object>> facetCounts, Map<String, String> fields,
+                                                      SolrParams params) {
+        final NamedList<Object> merged = facetCounts.get(0).clone();
+
+        final Map<String, Long> facetQueries = new LinkedHashMap<>();
+        final Map<String, Map<String, Long>> facetFields = new LinkedHashMap<>();
+        final Map<String, Long> facetMissing = new LinkedHashMap<>();
+        for (NamedList<Object> shardFacetCounts : facetCounts) {
+            final NamedList<Number> shardFacetQueries = (NamedList<Number>) shardFacetCounts.get("facet_queries");
+            if (shardFacetQueries != null) {
+                shardFacetQueries.forEach((query, count) -> facetQueries.merge(query, count.longValue(), Long::sum));
+            }
+            final NamedList<NamedList<Number>> shardFacetFields = (NamedList<NamedList<Number>>) shardFacetCounts.get("facet_fields");
+            if (shardFacetFields != null) {
+                shardFacetFields.forEach((field, values) -> {
+                    final Map<String, Long> counts = facetFields.computeIfAbsent(field, f -> new LinkedHashMap<>());
+                    values.forEach((value, count) -> {
+                        if (value == null) {
+                            facetMissing.merge(field, count.longValue(), Long::sum);
+                        } else {
+                            counts.merge(value, count.longValue(), Long::sum);
+                        }
+                    });
+                });
+            }
+        }
+
+        final NamedList<Object> mergedQueries = new SimpleOrderedMap<>();
+        facetQueries.forEach(mergedQueries::add);
+        final NamedList<Object> mergedFields = new SimpleOrderedMap<>();
+        facetFields.forEach((key, counts) -> {
+            final String field = fields.getOrDefault(key, key);
+            final int offset = params.getFieldInt(field, FacetParams.FACET_OFFSET, 0);
+            final int limit = params.getFieldInt(field, FacetParams.FACET_LIMIT, DEFAULT_FACET_LIMIT);
+            final int mincount = params.getFieldInt(field, FacetParams.FACET_MINCOUNT, 0);
+            final String sort = params.getFieldParam(field, FacetParams.FACET_SORT,
+                    limit > 0 ? FacetParams.FACET_SORT_COUNT : FacetParams.FACET_SORT_INDEX);
+
+            final List<Map.Entry<String, Long>> values = counts.entrySet().stream()
+                    .filter(e -> e.getValue() >= mincount)
+                    .collect(Collectors.toList());
+            if (FacetParams.FACET_SORT_COUNT.equals(sort) || FacetParams.FACET_SORT_COUNT_LEGACY.equals(sort)) {
+                values.sort(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+            } else {
+                values.sort(Map.Entry.comparingByKey());
+            }
+            final NamedList<Long> fieldCounts = new NamedList<>();
+            for (int i = offset; i < values.size() && (limit < 0 || i < offset + limit); i++) {
+                fieldCounts.add(values.get(i).getKey(), values.get(i).getValue());
+            }
+            if (facetMissing.containsKey(key)) {
+                fieldCounts.add(null, facetMissing.get(key));
+            }
+            mergedFields.add(key, fieldCounts);
+        });
+        if (merged.get("facet_queries") != null) {
+            merged.remove("facet_queries");
+            merged.add("facet_queries", mergedQueries);
+        }
+        if (merged.get("facet_fields") != null) {
+            merged.remove("facet_fields");
+            merged.add("facet_fields", mergedFields);
+        }
+        return merged;
+    }
+
+    /**
+     * Execute the requests on the shards in parallel.
+     * @param numShards the number of shards
+     * @param requests the request for each shard, {@code null} if nothing has to be sent to a shard
+     * @return the responses of the shards that received a request, ordered by shard
+     */
+    private List<NamedList<Object>> execute(int numShards, ShardRequestProvider requests) throws SolrServerException, IOException {
+        final List<Future<NamedList<Object>>> futures = new ArrayList<>(numShards);
+        for (int shard = 0; shard < numShards; shard++) {
+            final SolrRequest<?> shardRequest = requests.get(shard);
+            if (shardRequest != null) {
+                final SolrClient shardClient = shards.get(shard);
+                futures.add(executorService.submit(() -> shardClient.request(shardRequest)));
+            }
+        }
+        final List<NamedList<Object>> responses = new ArrayList<>(futures.size());
+        try {
+            for (Future<NamedList<Object>> future : futures) {
+                responses.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(f -> f.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new SolrServerException("Interrupted while waiting for the shards", e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof SolrServerException) {
+                throw (SolrServerException) cause;
+            } else if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new SolrServerException(cause);
+        }
+        return responses;
+    }
+
+    @Override
+    public void close() throws IOException {
+        //nop
+    }
+
+    @FunctionalInterface
+    private interface ShardRequestProvider {
+        SolrRequest<?> get(int shard);
+    }
+
+    /**
+     * A (simple) sort-clause, functions are not supported.
+     */
+    private static final class SortField {
+        private final String field;
+        private final boolean ascending;
+
+        private SortField(String field, boolean ascending) {
+            this.field = field;
+            this.ascending = ascending;
+        }
+
+        private static List<SortField> parse(String sort) throws SolrServerException {
+            final List<SortField> sortFields = new ArrayList<>();
+            if (StringUtils.isBlank(sort)) {
+                sortFields.add(new SortField(SCORE, false));
+                return sortFields;
+            }
+            for (String clause : StringUtils.split(sort, ',')) {
+                final String[] parts = StringUtils.split(clause.trim(), ' ');
+                if (parts.length != 2 || parts[0].contains("(")) {
+                    throw new SolrServerException("Unsupported sort for sharded core: " + sort);
+                }
+                sortFields.add(new SortField(parts[0], "asc".equalsIgnoreCase(parts[1])));
+            }
+            return sortFields;
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private static Comparator<SolrDocument> comparator(List<SortField> sort) {
+            Comparator<SolrDocument> comparator = (a, b) -> 0;
+            for (SortField sortField : sort) {
+                final Comparator<Comparable> values = sortField.ascending
+                        ? Comparator.nullsLast(Comparator.<Comparable>naturalOrder())
+                        : Comparator.nullsLast(Comparator.<Comparable>reverseOrder());
+                comparator = comparator.thenComparing(doc -> (Comparable) doc.getFirstValue(sortField.field), values);
+            }
+            return comparator;
+        }
+    }
+}
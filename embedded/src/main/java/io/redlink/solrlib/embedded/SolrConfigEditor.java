@@ -0,0 +1,145 @@
+/*
+ * Copyright 2017 redlink GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.redlink.solrlib.embedded;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.SAXException;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Changes settings of a {@code solrconfig.xml} that Solr does neither expose as properties nor via the config-overlay,
+ * e.g. the {@code directoryFactory}, the codec or the update-log.
+ */
+final class SolrConfigEditor {
+
+    static final String RAM_DIRECTORY_FACTORY = "solr.RAMDirectoryFactory";
+    static final String SINGLE_LOCK_TYPE = "single";
+
+    private final Path source;
+    private final Document document;
+
+    private SolrConfigEditor(Path source, Document document) {
+        this.source = source;
+        this.document = document;
+    }
+
+    /**
+     * @param solrConfig the {@code solrconfig.xml} to edit, it is not changed by the editor
+     */
+    static SolrConfigEditor read(Path solrConfig) throws IOException {
+        try (InputStream in = Files.newInputStream(solrConfig)) {
+            return new SolrConfigEditor(solrConfig,
+                    DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(in, solrConfig.toUri().toString()));
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new IOException("Could not parse " + solrConfig, e);
+        }
+    }
+
+    SolrConfigEditor setDirectoryFactory(String className) {
+        final Element directoryFactory = getOrCreateChild(document.getDocumentElement(), "directoryFactory");
+        directoryFactory.setAttribute("name", "DirectoryFactory");
+        directoryFactory.setAttribute("class", className);
+        return this;
+    }
+
+    SolrConfigEditor setLockType(String lockType) {
+        getOrCreateChild(getOrCreateChild(document.getDocumentElement(), "indexConfig"), "lockType")
+                .setTextContent(lockType);
+        return this;
+    }
+
+    SolrConfigEditor setRamBufferSizeMB(double ramBufferSizeMB) {
+        getOrCreateChild(getOrCreateChild(document.getDocumentElement(), "indexConfig"), "ramBufferSizeMB")
+                .setTextContent(String.valueOf(ramBufferSizeMB));
+        return this;
+    }
+
+    /**
+     * Set the {@code compressionMode} of the {@code codecFactory}, a {@code SchemaCodecFactory} is added if the
+     * config does not declare a {@code codecFactory}.
+     */
+    SolrConfigEditor setCompressionMode(String compressionMode) {
+        final Element config = document.getDocumentElement();
+        Element codecFactory = getChild(config, "codecFactory");
+        if (codecFactory == null) {
+            codecFactory = (Element) config.appendChild(document.createElement("codecFactory"));
+            codecFactory.setAttribute("class", "solr.SchemaCodecFactory");
+        }
+        Element mode = null;
+        for (Node child = codecFactory.getFirstChild(); child != null && mode == null; child = child.getNextSibling()) {
+            if (child.getNodeType() == Node.ELEMENT_NODE && "compressionMode".equals(((Element) child).getAttribute("name"))) {
+                mode = (Element) child;
+            }
+        }
+        if (mode == null) {
+            mode = (Element) codecFactory.appendChild(document.createElement("str"));
+            mode.setAttribute("name", "compressionMode");
+        }
+        mode.setTextContent(compressionMode);
+        return this;
+    }
+
+    SolrConfigEditor disableUpdateLog() {
+        final Element updateHandler = getChild(document.getDocumentElement(), "updateHandler");
+        final Element updateLog = updateHandler == null ? null : getChild(updateHandler, "updateLog");
+        if (updateLog != null) {
+            updateLog.setAttribute("enable", "false");
+        }
+        return this;
+    }
+
+    /**
+     * @param target the file to write the changed config to, relative paths (e.g. of {@code xi:include}s)
+     *               are not adjusted so it should be located next to the source.
+     */
+    void write(Path target) throws IOException {
+        try (OutputStream out = Files.newOutputStream(target)) {
+            TransformerFactory.newInstance().newTransformer().transform(new DOMSource(document), new StreamResult(out));
+        } catch (TransformerException e) {
+            throw new IOException("Could not write " + target + " (edited from " + source + ")", e);
+        }
+    }
+
+    private static Element getChild(Element parent, String name) {
+        for (Node child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child.getNodeType() == Node.ELEMENT_NODE && name.equals(child.getNodeName())) {
+                return (Element) child;
+            }
+        }
+        return null;
+    }
+
+    private static Element getOrCreateChild(Element parent, String name) {
+        final Element child = getChild(parent, name);
+        if (child != null) {
+            return child;
+        }
+        return (Element) parent.appendChild(parent.getOwnerDocument().createElement(name));
+    }
+}
@@ -16,21 +16,36 @@
 
 package io.redlink.solrlib.embedded;
 
+import io.redlink.solrlib.ShardRouter;
 import io.redlink.solrlib.SimpleCoreDescriptor;
-import io.redlink.solrlib.SolrCoreContainer;
+import io.redlink.solrlib.SolrCoreDescriptor;
 import io.redlink.utils.ResourceLoaderUtils;
 import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.core.RAMDirectoryFactory;
+import org.apache.solr.core.SolrCore;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 /**
  */
@@ -39,7 +54,7 @@ public class EmbeddedCoreContainerIT {
     @Rule
     public TemporaryFolder temporaryFolder = new TemporaryFolder();
 
-    private SolrCoreContainer coreContainer;
+    private EmbeddedCoreContainer coreContainer;
     private SimpleCoreDescriptor coreDescriptor;
 
     @Before
@@ -67,4 +82,146 @@ public class EmbeddedCoreContainerIT {
             assertEquals("ping", 0, solrClient.ping().getStatus());
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testCoreStatus() throws Exception {
+        try (SolrClient solrClient = coreContainer.getSolrClient(coreDescriptor)) {
+            final EmbeddedCoreStatus initial = coreContainer.getCoreStatus("foo");
+            assertTrue(initial.isLoaded());
+            assertEquals(0, initial.getNumDocs());
+            assertNull("new core was never updated", initial.getLastModified());
+
+            final SolrInputDocument doc = new SolrInputDocument();
+            doc.addField("id", "1");
+            solrClient.add(doc);
+            solrClient.commit();
+
+            final EmbeddedCoreStatus updated = coreContainer.getCoreStatus("foo");
+            assertEquals(1, updated.getNumDocs());
+            assertNotNull(updated.getLastModified());
+            assertTrue(updated.getIndexVersion() > initial.getIndexVersion());
+        }
+    }
+
+    @Test
+    public void testInMemory() throws Exception {
+        final EmbeddedCoreContainerConfiguration config = new EmbeddedCoreContainerConfiguration();
+        config.setHome(temporaryFolder.newFolder("in-memory").toPath());
+        config.setInMemory(true);
+
+        final EmbeddedCoreContainer inMemoryContainer = new EmbeddedCoreContainer(Collections.singleton(coreDescriptor), config, null);
+        inMemoryContainer.initialize();
+        try (SolrClient solrClient = inMemoryContainer.getSolrClient(coreDescriptor)) {
+            try (SolrCore core = inMemoryContainer.getCoreContainer().getCore("foo")) {
+                assertTrue(core.getDirectoryFactory() instanceof RAMDirectoryFactory);
+                assertNull("update-log disabled", core.getUpdateHandler().getUpdateLog());
+            }
+
+            final SolrInputDocument doc = new SolrInputDocument();
+            doc.addField("id", "1");
+            solrClient.add(doc);
+            solrClient.commit();
+
+            assertEquals(1, inMemoryContainer.getCoreStatus("foo").getNumDocs());
+            assertTrue(inMemoryContainer.getMemoryUsage("foo") > 0);
+            assertEquals("disk-based index does not use memory", 0, coreContainer.getMemoryUsage("foo"));
+        } finally {
+            inMemoryContainer.shutdown();
+        }
+    }
+
+    @Test
+    public void testIndexTemplate() throws Exception {
+        final EmbeddedCoreContainerConfiguration config = new EmbeddedCoreContainerConfiguration();
+        config.setHome(temporaryFolder.newFolder("seeded").toPath());
+
+        final SimpleCoreDescriptor seeded = new SimpleCoreDescriptor("seeded", ResourceLoaderUtils.getResourceAsPath("/basic.zip", EmbeddedCoreContainerTest.class))
+                .setIndexTemplate(EmbeddedCoreContainerTest.createIndexTemplate(temporaryFolder.newFolder("index-template").toPath(), "1", "2"));
+        final EmbeddedCoreContainer seededContainer = new EmbeddedCoreContainer(Collections.singleton(seeded), config, null);
+        seededContainer.initialize();
+        try (SolrClient solrClient = seededContainer.getSolrClient(seeded)) {
+            assertEquals(2, seededContainer.getCoreStatus("seeded").getNumDocs());
+            assertEquals(2, solrClient.query(new SolrQuery("*:*")).getResults().getNumFound());
+        } finally {
+            seededContainer.shutdown();
+        }
+    }
+
+    @Test
+    public void testTransientCoresRestart() throws Exception {
+        final EmbeddedCoreContainerConfiguration config = new EmbeddedCoreContainerConfiguration();
+        config.setHome(temporaryFolder.newFolder("transient").toPath());
+        // less than the number of transient cores, so cores are evicted during startup
+        config.setTransientCacheSize(1);
+
+        final AtomicInteger created = new AtomicInteger();
+        final Set<SolrCoreDescriptor> coreDescriptors = new HashSet<>();
+        for (String coreName : Arrays.asList("t1", "t2", "t3")) {
+            coreDescriptors.add(new SimpleCoreDescriptor(coreName, ResourceLoaderUtils.getResourceAsPath("/basic.zip", EmbeddedCoreContainerTest.class)) {
+                @Override
+                public void onCoreCreated(SolrClient solrClient) throws IOException, SolrServerException {
+                    created.incrementAndGet();
+                    final SolrInputDocument doc = new SolrInputDocument();
+                    doc.addField("id", "1");
+                    solrClient.add(doc);
+                    solrClient.commit();
+                }
+            }.setTransient(true));
+        }
+
+        for (int run = 0; run < 2; run++) {
+            final EmbeddedCoreContainer transientContainer = new EmbeddedCoreContainer(coreDescriptors, config, null);
+            transientContainer.initialize();
+            try {
+                for (SolrCoreDescriptor coreDescriptor : coreDescriptors) {
+                    try (SolrClient solrClient = transientContainer.getSolrClient(coreDescriptor.getCoreName(), 30, TimeUnit.SECONDS)) {
+                        assertEquals(1, solrClient.query(new SolrQuery("*:*")).getResults().getNumFound());
+                    }
+                }
+            } finally {
+                transientContainer.shutdown();
+            }
+            assertEquals("onCoreCreated only on the first start", coreDescriptors.size(), created.get());
+        }
+    }
+
+    @Test
+    public void testShards() throws Exception {
+        final EmbeddedCoreContainerConfiguration config = new EmbeddedCoreContainerConfiguration();
+        config.setHome(temporaryFolder.newFolder("sharded").toPath());
+
+        final SimpleCoreDescriptor sharded = new SimpleCoreDescriptor("sharded", ResourceLoaderUtils.getResourceAsPath("/basic.zip", EmbeddedCoreContainerTest.class))
+                .setNumShards(3);
+        final EmbeddedCoreContainer shardedContainer = new EmbeddedCoreContainer(Collections.singleton(sharded), config, null);
+        shardedContainer.initialize();
+        try (SolrClient solrClient = shardedContainer.getSolrClient(sharded)) {
+            for (int i = 0; i < 20; i++) {
+                final SolrInputDocument doc = new SolrInputDocument();
+                doc.addField("id", String.format("%02d", i));
+                solrClient.add(doc);
+            }
+            solrClient.commit();
+
+            long numDocs = 0;
+            for (int shard = 0; shard < 3; shard++) {
+                final long shardDocs = shardedContainer.getCoreStatus(ShardRouter.getShardName("sharded", shard)).getNumDocs();
+                assertTrue("documents are distributed", shardDocs < 20);
+                numDocs += shardDocs;
+            }
+            assertEquals(20, numDocs);
+
+            final SolrDocumentList results = solrClient.query(new SolrQuery("*:*").setSort("id", SolrQuery.ORDER.asc)
+                    .setStart(5).setRows(3)).getResults();
+            assertEquals(20, results.getNumFound());
+            assertEquals(3, results.size());
+            assertEquals("05", results.get(0).getFirstValue("id"));
+            assertEquals("07", results.get(2).getFirstValue("id"));
+
+            solrClient.deleteById("05");
+            solrClient.commit();
+            assertEquals(19, solrClient.query(new SolrQuery("*:*")).getResults().getNumFound());
+        } finally {
+            shardedContainer.shutdown();
+        }
+    }
+}
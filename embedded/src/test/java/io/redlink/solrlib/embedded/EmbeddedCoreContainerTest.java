@@ -17,16 +17,30 @@
 package io.redlink.solrlib.embedded;
 
 import io.redlink.solrlib.SimpleCoreDescriptor;
+import io.redlink.solrlib.SolrCoreDescriptor;
+import io.redlink.solrlib.SolrCoreState;
 import io.redlink.solrlib.embedded.test.ExecutorServiceResource;
 import io.redlink.utils.ResourceLoaderUtils;
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.solr.update.SolrIndexWriter;
 import org.hamcrest.Matchers;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Collections;
+import java.util.stream.Stream;
 
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
@@ -63,6 +77,12 @@ public class EmbeddedCoreContainerTest {
         try {
             assertTrue("solr.xml", Files.exists(solrHome.resolve("solr.xml")));
             assertTrue("foo/core.properties", Files.exists(solrHome.resolve("foo").resolve("core.properties")));
+            assertEquals("foo", coreContainer.getCoreStatus("foo").getCoreName());
+            try {
+                coreContainer.getCoreStatus("bar");
+                fail("must not provide a status for an unknown core");
+            } catch (IllegalArgumentException ignore) {
+            }
 
             try {
                 coreContainer.init(executorService.get());
@@ -78,6 +98,207 @@ public class EmbeddedCoreContainerTest {
         verify(coreContainer, times(1)).scheduleCoreInit(executorService.get(), foo, true);
     }
 
+    @Test
+    public void testSolrXml() throws Exception {
+        final Path solrHome = temporaryFolder.newFolder("solr-home").toPath();
+
+        final EmbeddedCoreContainerConfiguration config = new EmbeddedCoreContainerConfiguration();
+        config.setHome(solrHome);
+        config.setCoreLoadThreads(7);
+        config.setShardHandlerMaxPoolSize(42);
+        config.setJmxMetricsEnabled(false);
+
+        final EmbeddedCoreContainer coreContainer = new EmbeddedCoreContainer(Collections.emptySet(), config, null);
+        coreContainer.init(executorService.get());
+        coreContainer.shutdown();
+
+        final String solrXml = new String(Files.readAllBytes(solrHome.resolve("solr.xml")), StandardCharsets.UTF_8);
+        assertThat(solrXml, Matchers.containsString("<int name=\"coreLoadThreads\">7</int>"));
+        assertThat(solrXml, Matchers.containsString("<int name=\"maximumPoolSize\">42</int>"));
+        assertThat(solrXml, Matchers.not(Matchers.containsString("corePoolSize")));
+        assertThat(solrXml, Matchers.not(Matchers.containsString("transientCacheSize")));
+        assertThat(solrXml, Matchers.containsString("<bool name=\"enabled\">false</bool>"));
+
+        // a generated solr.xml is updated with the current configuration
+        config.setCoreLoadThreads(3);
+        config.setJmxMetricsEnabled(true);
+        final EmbeddedCoreContainer updated = new EmbeddedCoreContainer(Collections.emptySet(), config, null);
+        updated.init(executorService.get());
+        updated.shutdown();
+        final String updatedSolrXml = new String(Files.readAllBytes(solrHome.resolve("solr.xml")), StandardCharsets.UTF_8);
+        assertThat(updatedSolrXml, Matchers.containsString("<int name=\"coreLoadThreads\">3</int>"));
+        assertThat(updatedSolrXml, Matchers.not(Matchers.containsString("<bool name=\"enabled\">false</bool>")));
+        assertThat(updatedSolrXml, Matchers.endsWith("</solr>" + System.lineSeparator()));
+
+        // an existing solr.xml takes precedence
+        final String customSolrXml = "<solr><int name=\"coreLoadThreads\">2</int></solr>";
+        Files.write(solrHome.resolve("solr.xml"), customSolrXml.getBytes(StandardCharsets.UTF_8));
+        final EmbeddedCoreContainer other = new EmbeddedCoreContainer(Collections.emptySet(), config, null);
+        other.init(executorService.get());
+        other.shutdown();
+        assertEquals(customSolrXml, new String(Files.readAllBytes(solrHome.resolve("solr.xml")), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testInMemory() throws Exception {
+        final Path solrHome = temporaryFolder.newFolder("solr-home").toPath();
+
+        final EmbeddedCoreContainerConfiguration config = new EmbeddedCoreContainerConfiguration();
+        config.setHome(solrHome);
+        config.setInMemory(true);
+
+        final EmbeddedCoreContainer coreContainer = new EmbeddedCoreContainer(Collections.singleton(
+                new SimpleCoreDescriptor("foo", ResourceLoaderUtils.getResourceAsPath("/basic.zip", EmbeddedCoreContainerTest.class))
+        ), config, null);
+        coreContainer.init(executorService.get());
+        try {
+            assertTrue(coreContainer.isInMemory());
+            final String solrConfig = new String(Files.readAllBytes(solrHome.resolve("foo").resolve("conf").resolve("solrlib-solrconfig.xml")),
+                    StandardCharsets.UTF_8);
+            assertThat(solrConfig, Matchers.containsString("class=\"solr.RAMDirectoryFactory\""));
+            assertThat(solrConfig, Matchers.containsString("<lockType>single</lockType>"));
+            assertThat(solrConfig, Matchers.containsString("<updateLog enable=\"false\">"));
+        } finally {
+            coreContainer.shutdown();
+        }
+        assertTrue("configured solr-home kept on shutdown", Files.isDirectory(solrHome));
+        assertTrue(Files.exists(solrHome.resolve("foo").resolve("core.properties")));
+    }
+
+    @Test
+    public void testStorageSettings() throws Exception {
+        final Path solrHome = temporaryFolder.newFolder("solr-home").toPath();
+        final Path confDir = solrHome.resolve("foo").resolve("conf");
+
+        final EmbeddedCoreContainerConfiguration config = new EmbeddedCoreContainerConfiguration();
+        config.setHome(solrHome);
+
+        final EmbeddedCoreContainer coreContainer = new EmbeddedCoreContainer(Collections.singleton(
+                new SimpleCoreDescriptor("foo", ResourceLoaderUtils.getResourceAsPath("/basic.zip", EmbeddedCoreContainerTest.class))
+                        .setDirectoryFactory("solr.MMapDirectoryFactory")
+                        .setStoredFieldsCompression(SolrCoreDescriptor.StoredFieldsCompression.BEST_COMPRESSION)
+                        .setRamBufferSizeMB(256)
+        ), config, null);
+        coreContainer.init(executorService.get());
+        coreContainer.shutdown();
+
+        final String bundleConfig = new String(Files.readAllBytes(confDir.resolve("solrconfig.xml")), StandardCharsets.UTF_8);
+        assertThat("bundled config untouched", bundleConfig, Matchers.not(Matchers.containsString("class=\"solr.MMapDirectoryFactory\"")));
+        final String solrConfig = new String(Files.readAllBytes(confDir.resolve("solrlib-solrconfig.xml")), StandardCharsets.UTF_8);
+        assertThat(solrConfig, Matchers.containsString("class=\"solr.MMapDirectoryFactory\""));
+        assertThat(solrConfig, Matchers.containsString("<str name=\"compressionMode\">BEST_COMPRESSION</str>"));
+        assertThat(solrConfig, Matchers.containsString("<ramBufferSizeMB>256.0</ramBufferSizeMB>"));
+        assertThat(new String(Files.readAllBytes(solrHome.resolve("foo").resolve("core.properties")), StandardCharsets.UTF_8),
+                Matchers.containsString("config=solrlib-solrconfig.xml"));
+
+        // resetting the settings restores the bundled config
+        final EmbeddedCoreContainer reset = new EmbeddedCoreContainer(Collections.singleton(
+                new SimpleCoreDescriptor("foo", ResourceLoaderUtils.getResourceAsPath("/basic.zip", EmbeddedCoreContainerTest.class))
+        ), config, null);
+        reset.init(executorService.get());
+        reset.shutdown();
+        assertFalse(Files.exists(confDir.resolve("solrlib-solrconfig.xml")));
+        assertThat(new String(Files.readAllBytes(solrHome.resolve("foo").resolve("core.properties")), StandardCharsets.UTF_8),
+                Matchers.not(Matchers.containsString("config=")));
+    }
+
+    @Test
+    public void testIndexTemplate() throws Exception {
+        final Path solrHome = temporaryFolder.newFolder("solr-home").toPath();
+        final Path indexTemplate = createIndexTemplate(temporaryFolder.newFolder("index-template").toPath(), "1", "2");
+
+        final EmbeddedCoreContainerConfiguration config = new EmbeddedCoreContainerConfiguration();
+        config.setHome(solrHome);
+
+        final EmbeddedCoreContainer coreContainer = new EmbeddedCoreContainer(Collections.singleton(
+                new SimpleCoreDescriptor("foo", ResourceLoaderUtils.getResourceAsPath("/basic.zip", EmbeddedCoreContainerTest.class))
+                        .setIndexTemplate(indexTemplate)
+        ), config, null);
+        coreContainer.init(executorService.get());
+        coreContainer.shutdown();
+
+        final Path indexDir = solrHome.resolve("foo").resolve("data").resolve("index");
+        try (Stream<Path> templateFiles = Files.list(indexTemplate)) {
+            templateFiles.forEach(file -> assertTrue(file.getFileName() + " installed",
+                    Files.exists(indexDir.resolve(file.getFileName().toString()))));
+        }
+        try (FSDirectory directory = FSDirectory.open(indexDir);
+             DirectoryReader reader = DirectoryReader.open(directory)) {
+            assertEquals(2, reader.numDocs());
+        }
+    }
+
+    @Test
+    public void testShards() throws Exception {
+        final Path solrHome = temporaryFolder.newFolder("solr-home").toPath();
+
+        final EmbeddedCoreContainerConfiguration config = new EmbeddedCoreContainerConfiguration();
+        config.setHome(solrHome);
+
+        final EmbeddedCoreContainer coreContainer = new EmbeddedCoreContainer(Collections.singleton(
+                new SimpleCoreDescriptor("foo", ResourceLoaderUtils.getResourceAsPath("/basic.zip", EmbeddedCoreContainerTest.class))
+                        .setNumShards(2)
+        ), config, null);
+        coreContainer.init(executorService.get());
+        try {
+            assertFalse("no core for the logical name", Files.exists(solrHome.resolve("foo")));
+            for (String shard : new String[]{"foo_shard1", "foo_shard2"}) {
+                assertTrue(Files.exists(solrHome.resolve(shard).resolve("conf").resolve("solrconfig.xml")));
+                assertThat(new String(Files.readAllBytes(solrHome.resolve(shard).resolve("core.properties")), StandardCharsets.UTF_8),
+                        Matchers.containsString("name=" + shard));
+            }
+            assertThat(coreContainer.createSolrClient("foo"), Matchers.instanceOf(ShardedEmbeddedSolrServer.class));
+        } finally {
+            coreContainer.shutdown();
+        }
+    }
+
+    @Test
+    public void testShardLayoutChange() throws Exception {
+        final Path solrHome = temporaryFolder.newFolder("solr-home").toPath();
+
+        final EmbeddedCoreContainerConfiguration config = new EmbeddedCoreContainerConfiguration();
+        config.setHome(solrHome);
+
+        final EmbeddedCoreContainer unsharded = new EmbeddedCoreContainer(Collections.singleton(
+                new SimpleCoreDescriptor("foo", ResourceLoaderUtils.getResourceAsPath("/basic.zip", EmbeddedCoreContainerTest.class))
+        ), config, null);
+        unsharded.init(executorService.get());
+        unsharded.shutdown();
+        assertTrue(Files.exists(solrHome.resolve("foo").resolve("core.properties")));
+
+        // the existing core would be orphaned
+        final EmbeddedCoreContainer sharded = new EmbeddedCoreContainer(Collections.singleton(
+                new SimpleCoreDescriptor("foo", ResourceLoaderUtils.getResourceAsPath("/basic.zip", EmbeddedCoreContainerTest.class))
+                        .setNumShards(2)
+        ), config, null);
+        sharded.init(executorService.get());
+        try {
+            assertEquals(SolrCoreState.FAILED, sharded.getCoreState("foo"));
+            assertFalse(Files.exists(solrHome.resolve("foo_shard1")));
+        } finally {
+            sharded.shutdown();
+        }
+    }
+
+    /**
+     * Create a (Solr-compatible) index with a document for each of the provided ids.
+     */
+    static Path createIndexTemplate(Path indexDir, String... ids) throws IOException {
+        try (FSDirectory directory = FSDirectory.open(indexDir);
+             IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(new KeywordAnalyzer()))) {
+            for (String id : ids) {
+                final Document doc = new Document();
+                doc.add(new StringField("id", id, Field.Store.YES));
+                writer.addDocument(doc);
+            }
+            writer.setLiveCommitData(Collections.singletonMap(SolrIndexWriter.COMMIT_TIME_MSEC_KEY,
+                    String.valueOf(System.currentTimeMillis())).entrySet());
+            writer.commit();
+        }
+        return indexDir;
+    }
+
     @Test
     public void testCreateSolrClient() throws Exception {
         final Path solrHome = temporaryFolder.newFolder("solr-home").toPath();
@@ -105,6 +326,7 @@ public class EmbeddedCoreContainerTest {
             } catch (IllegalArgumentException ignore) {
             }
             assertNotNull(coreContainer.createSolrClient(coreName));
+            assertSame("SolrClient is cached per core", coreContainer.createSolrClient(coreName), coreContainer.createSolrClient(coreName));
         } finally {
             coreContainer.shutdown();
         }
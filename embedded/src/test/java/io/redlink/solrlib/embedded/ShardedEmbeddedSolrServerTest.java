@@ -0,0 +1,318 @@
+/*
+ * Copyright 2017 redlink GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.redlink.solrlib.embedded;
+
+import io.redlink.solrlib.ShardRouter;
+import io.redlink.solrlib.embedded.test.ExecutorServiceResource;
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.request.QueryRequest;
+import org.apache.solr.client.solrj.request.UpdateRequest;
+import org.apache.solr.client.solrj.response.FacetField;
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
+import org.apache.solr.common.util.StrUtils;
+import org.apache.solr.schema.FieldProperties;
+import org.apache.solr.schema.IndexSchema;
+import org.apache.solr.schema.SchemaField;
+import org.apache.solr.schema.StrField;
+import org.hamcrest.Matchers;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ */
+public class ShardedEmbeddedSolrServerTest {
+
+    @Rule
+    public ExecutorServiceResource executorService = new ExecutorServiceResource();
+
+    private final IndexSchema schema = mockSchema();
+
+    @Test
+    public void testQuery() throws Exception {
+        final SolrClient shard1 = mockShard(3, 2.0f, doc("a", 2.0f, "x"), doc("c", 1.0f, "y"));
+        final SolrClient shard2 = mockShard(2, 3.0f, doc("b", 3.0f, "x"), doc("d", 0.5f, "x"));
+        final ShardedEmbeddedSolrServer solrClient = new ShardedEmbeddedSolrServer(Arrays.asList(shard1, shard2),
+                new ShardRouter(2), () -> schema, executorService.get());
+
+        final QueryResponse response = solrClient.query(new SolrQuery("*:*").setFields("id").setStart(1).setRows(2)
+                .setFacet(true).addFacetField("type").setFacetLimit(1));
+        final SolrDocumentList results = response.getResults();
+        assertEquals(5, results.getNumFound());
+        assertEquals(3.0f, results.getMaxScore(), 0.0f);
+        assertEquals(2, results.size());
+        assertEquals("a", results.get(0).getFieldValue("id"));
+        assertEquals("c", results.get(1).getFieldValue("id"));
+        assertFalse("score only requested for sorting", results.get(0).containsKey("score"));
+
+        final FacetField facet = response.getFacetField("type");
+        assertEquals(1, facet.getValueCount());
+        assertEquals("x", facet.getValues().get(0).getName());
+        assertEquals(3, facet.getValues().get(0).getCount());
+
+        final ArgumentCaptor<SolrRequest> request = ArgumentCaptor.forClass(SolrRequest.class);
+        Mockito.verify(shard1).request(request.capture(), Mockito.isNull());
+        assertEquals("0", request.getValue().getParams().get("start"));
+        assertEquals("3", request.getValue().getParams().get("rows"));
+        assertEquals("id,score", request.getValue().getParams().get("fl"));
+    }
+
+    @Test
+    public void testFacetMerge() throws Exception {
+        final SolrClient shard1 = mockFacetShard("x", 2, "y", 1, null, 1);
+        final SolrClient shard2 = mockFacetShard("x", 0, "y", 2, "z", 1, null, 2);
+        final ShardedEmbeddedSolrServer solrClient = new ShardedEmbeddedSolrServer(Arrays.asList(shard1, shard2),
+                new ShardRouter(2), () -> schema, executorService.get());
+
+        // the mincount applies to the merged counts, the missing count is added last
+        final SolrQuery query = new SolrQuery("*:*").setFacet(true).addFacetField("type")
+                .setFacetMissing(true).setFacetMinCount(2);
+        assertEquals(Arrays.asList("y=3", "x=2", "null=3"), facetValues(solrClient.query(query), "type"));
+
+        final ArgumentCaptor<SolrRequest> request = ArgumentCaptor.forClass(SolrRequest.class);
+        Mockito.verify(shard1).request(request.capture(), Mockito.isNull());
+        assertEquals("-1", request.getValue().getParams().get("facet.limit"));
+        assertEquals("0", request.getValue().getParams().get("facet.mincount"));
+
+        // sort by value with a missing count
+        query.setFacetSort("index");
+        assertEquals(Arrays.asList("x=2", "y=3", "null=3"), facetValues(solrClient.query(query), "type"));
+
+        // per-field parameters
+        query.setFacetSort("count").setFacetMinCount(1)
+                .set("f.type.facet.limit", 1).set("f.type.facet.offset", 1);
+        assertEquals(Arrays.asList("x=2", "null=3"), facetValues(solrClient.query(query), "type"));
+        Mockito.verify(shard2, Mockito.times(3)).request(request.capture(), Mockito.isNull());
+        assertNull(request.getValue().getParams().get("f.type.facet.limit"));
+        assertNull(request.getValue().getParams().get("f.type.facet.offset"));
+    }
+
+    @Test
+    public void testSort() throws Exception {
+        final SolrClient shard1 = mockShard(1, 1.0f, doc("a", 1.0f, "x"));
+        final SolrClient shard2 = mockShard(1, 1.0f, doc("b", 1.0f, "x"));
+        final ShardedEmbeddedSolrServer solrClient = new ShardedEmbeddedSolrServer(Arrays.asList(shard1, shard2),
+                new ShardRouter(2), () -> schema, executorService.get());
+
+        solrClient.query(new SolrQuery("*:*").setFields("*").setSort("price", SolrQuery.ORDER.asc));
+        final ArgumentCaptor<SolrRequest> request = ArgumentCaptor.forClass(SolrRequest.class);
+        Mockito.verify(shard1).request(request.capture(), Mockito.isNull());
+        assertEquals("docValues not returned by *", "*,price", request.getValue().getParams().get("fl"));
+
+        try {
+            solrClient.query(new SolrQuery("*:*").setSort("text", SolrQuery.ORDER.asc));
+            fail("sort on a field that is neither stored nor has docValues");
+        } catch (SolrServerException e) {
+            assertThat(e.getMessage(), Matchers.containsString("text"));
+        }
+    }
+
+    @Test
+    public void testUnsupported() throws Exception {
+        final SolrClient shard1 = mockShard(1, 1.0f, doc("a", 1.0f, "x"));
+        final SolrClient shard2 = mockShard(1, 1.0f, doc("b", 1.0f, "x"));
+        final ShardedEmbeddedSolrServer solrClient = new ShardedEmbeddedSolrServer(Arrays.asList(shard1, shard2),
+                new ShardRouter(2), () -> schema, executorService.get());
+
+        final List<SolrQuery> queries = Arrays.asList(
+                new SolrQuery("*:*").setParam("group", true).setParam("group.field", "type"),
+                new SolrQuery("*:*").setParam("stats", true).setParam("stats.field", "price"),
+                new SolrQuery("*:*").setFacet(true).setParam("facet.range", "price"),
+                new SolrQuery("*:*").setFacet(true).addFacetPivotField("type,price"),
+                new SolrQuery("*:*").setParam("json.facet", "{types:{terms:type}}"),
+                new SolrQuery("*:*").setSort("id", SolrQuery.ORDER.asc).setParam("cursorMark", "*"),
+                new SolrQuery("foo").setRequestHandler("/terms"));
+        for (SolrQuery query : queries) {
+            try {
+                solrClient.query(query);
+                fail("unsupported query: " + query);
+            } catch (SolrServerException e) {
+                // expected
+            }
+        }
+        Mockito.verify(shard1, Mockito.never()).request(Mockito.any(), Mockito.any());
+        Mockito.verify(shard2, Mockito.never()).request(Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    public void testRealtimeGet() throws Exception {
+        final ShardRouter router = new ShardRouter(2);
+        final SolrClient shard1 = mockGetShard();
+        final SolrClient shard2 = mockGetShard();
+        final ShardedEmbeddedSolrServer solrClient = new ShardedEmbeddedSolrServer(Arrays.asList(shard1, shard2),
+                router, () -> schema, executorService.get());
+
+        final List<String> ids = Arrays.asList("a", "b", "c", "d", "e");
+        final SolrDocumentList docs = solrClient.getById(ids);
+        assertEquals(ids.size(), docs.size());
+        assertEquals(ids.size(), docs.getNumFound());
+        assertThat(docs.stream().map(d -> d.getFieldValue("id")).collect(Collectors.toList()),
+                Matchers.containsInAnyOrder(ids.toArray()));
+
+        final SolrDocument doc = solrClient.getById("e");
+        assertEquals("e", doc.getFieldValue("id"));
+        final QueryResponse single = solrClient.query(new SolrQuery().setRequestHandler("/get").setParam("id", "e"));
+        assertEquals("e", ((SolrDocument) single.getResponse().get("doc")).getFieldValue("id"));
+        Mockito.verify(router.getShard("e") == 0 ? shard1 : shard2, Mockito.times(3))
+                .request(Mockito.any(), Mockito.isNull());
+    }
+
+    @Test
+    public void testUpdate() throws Exception {
+        final SolrClient shard1 = Mockito.mock(SolrClient.class);
+        final SolrClient shard2 = Mockito.mock(SolrClient.class);
+        Mockito.when(shard1.request(Mockito.any(), Mockito.isNull())).thenReturn(new NamedList<>());
+        Mockito.when(shard2.request(Mockito.any(), Mockito.isNull())).thenReturn(new NamedList<>());
+        final ShardRouter router = new ShardRouter(2);
+        final ShardedEmbeddedSolrServer solrClient = new ShardedEmbeddedSolrServer(Arrays.asList(shard1, shard2),
+                router, () -> schema, executorService.get());
+
+        final SolrInputDocument doc = new SolrInputDocument();
+        doc.addField("id", "foo");
+        solrClient.add(doc);
+
+        final SolrClient target = router.getShard("foo") == 0 ? shard1 : shard2;
+        final ArgumentCaptor<SolrRequest> request = ArgumentCaptor.forClass(SolrRequest.class);
+        Mockito.verify(target).request(request.capture(), Mockito.isNull());
+        assertEquals(Arrays.asList(doc), ((UpdateRequest) request.getValue()).getDocuments());
+        Mockito.verify(target == shard1 ? shard2 : shard1, Mockito.never()).request(Mockito.any(), Mockito.any());
+    }
+
+    private static IndexSchema mockSchema() {
+        final SchemaField id = new SchemaField("id", new StrField(), Properties.STORED_FIELD, null);
+        final IndexSchema schema = Mockito.mock(IndexSchema.class);
+        Mockito.when(schema.getUniqueKeyField()).thenReturn(id);
+        Mockito.when(schema.getFieldOrNull("id")).thenReturn(id);
+        Mockito.when(schema.getFieldOrNull("price")).thenReturn(new SchemaField("price", new StrField(), Properties.DOC_VALUES_FIELD, null));
+        Mockito.when(schema.getFieldOrNull("text")).thenReturn(new SchemaField("text", new StrField(), Properties.INDEXED_FIELD, null));
+        return schema;
+    }
+
+    /**
+     * A shard answering real-time get with a document for every requested id.
+     */
+    private static SolrClient mockGetShard() throws Exception {
+        final SolrClient shard = Mockito.mock(SolrClient.class);
+        Mockito.when(shard.request(Mockito.any(QueryRequest.class), Mockito.isNull())).thenAnswer(invocation -> {
+            final SolrParams params = invocation.<SolrRequest>getArgument(0).getParams();
+            assertEquals("/get", params.get("qt"));
+            final NamedList<Object> response = new NamedList<>();
+            if (params.get("ids") == null) {
+                response.add("doc", doc(params.get("id"), 1.0f, "x"));
+            } else {
+                final SolrDocumentList docs = new SolrDocumentList();
+                for (String ids : params.getParams("ids")) {
+                    StrUtils.splitSmart(ids, ",", true).forEach(id -> docs.add(doc(id, 1.0f, "x")));
+                }
+                docs.setNumFound(docs.size());
+                response.add("response", docs);
+            }
+            return response;
+        });
+        return shard;
+    }
+
+    private static SolrClient mockShard(long numFound, float maxScore, SolrDocument... docs) throws Exception {
+        final SolrDocumentList results = new SolrDocumentList();
+        results.addAll(Arrays.asList(docs));
+        results.setNumFound(numFound);
+        results.setMaxScore(maxScore);
+
+        final NamedList<Object> typeCounts = new NamedList<>();
+        for (SolrDocument doc : docs) {
+            final String type = (String) doc.getFieldValue("type");
+            final Integer count = (Integer) typeCounts.get(type);
+            typeCounts.remove(type);
+            typeCounts.add(type, count == null ? 1 : count + 1);
+        }
+        final NamedList<Object> facetFields = new SimpleOrderedMap<>();
+        facetFields.add("type", typeCounts);
+        final NamedList<Object> facetCounts = new SimpleOrderedMap<>();
+        facetCounts.add("facet_queries", new SimpleOrderedMap<>());
+        facetCounts.add("facet_fields", facetFields);
+
+        final NamedList<Object> response = new NamedList<>();
+        response.add("response", results);
+        response.add("facet_counts", facetCounts);
+
+        final SolrClient shard = Mockito.mock(SolrClient.class);
+        Mockito.when(shard.request(Mockito.any(QueryRequest.class), Mockito.isNull())).thenReturn(response);
+        return shard;
+    }
+
+    private static SolrClient mockFacetShard(Object... typeCounts) throws Exception {
+        final NamedList<Object> counts = new NamedList<>();
+        for (int i = 0; i < typeCounts.length; i += 2) {
+            counts.add((String) typeCounts[i], typeCounts[i + 1]);
+        }
+        final NamedList<Object> facetFields = new SimpleOrderedMap<>();
+        facetFields.add("type", counts);
+        final NamedList<Object> facetCounts = new SimpleOrderedMap<>();
+        facetCounts.add("facet_fields", facetFields);
+
+        final NamedList<Object> response = new NamedList<>();
+        response.add("response", new SolrDocumentList());
+        response.add("facet_counts", facetCounts);
+
+        final SolrClient shard = Mockito.mock(SolrClient.class);
+        Mockito.when(shard.request(Mockito.any(QueryRequest.class), Mockito.isNull())).thenReturn(response);
+        return shard;
+    }
+
+    private static List<String> facetValues(QueryResponse response, String field) {
+        return response.getFacetField(field).getValues().stream()
+                .map(c -> c.getName() + "=" + c.getCount())
+                .collect(Collectors.toList());
+    }
+
+    private static SolrDocument doc(String id, float score, String type) {
+        final SolrDocument doc = new SolrDocument();
+        doc.setField("id", id);
+        doc.setField("score", score);
+        doc.setField("type", type);
+        return doc;
+    }
+
+    /**
+     * Access to the (protected) property-flags of a {@link SchemaField}.
+     */
+    private static final class Properties extends FieldProperties {
+        private static final int INDEXED_FIELD = INDEXED;
+        private static final int STORED_FIELD = INDEXED | STORED;
+        private static final int DOC_VALUES_FIELD = INDEXED | DOC_VALUES;
+    }
+}
@@ -67,6 +67,7 @@ public class SolrLibCloudAutoconfiguration {
         config.setMaxShardsPerNode(props.getMaxShardsPerNode());
         config.setPrefix(props.getCollectionPrefix());
         config.setDeployCores(props.isDeployCores());
+        config.setDeployParallelism(props.getDeployParallelism());
 
         return new SolrCloudConnector(coreDescriptors, config);
     }
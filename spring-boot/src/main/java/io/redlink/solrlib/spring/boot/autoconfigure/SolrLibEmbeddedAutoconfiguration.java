@@ -73,6 +73,13 @@ public class SolrLibEmbeddedAutoconfiguration {
         }
         config.setHome(solrHome);
         config.setDeleteOnShutdown(props.isDeleteOnShutdown());
+        config.setDeployParallelism(props.getDeployParallelism());
+        config.setTransientCacheSize(props.getTransientCacheSize());
+        config.setCoreLoadThreads(props.getCoreLoadThreads());
+        config.setShardHandlerCorePoolSize(props.getShardHandlerCorePoolSize());
+        config.setShardHandlerMaxPoolSize(props.getShardHandlerMaxPoolSize());
+        config.setJmxMetricsEnabled(props.isJmxMetricsEnabled());
+        config.setInMemory(props.isInMemory());
 
         return new EmbeddedCoreContainer(coreDescriptors, config);
     }
@@ -31,9 +31,8 @@ import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
-import java.util.Collections;
-import java.util.Optional;
-import java.util.Set;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  */
@@ -45,15 +44,12 @@ import java.util.Set;
 public class SolrLibHealthIndicatorConfiguration {
 
     private final SolrCoreContainer solrCoreContainer;
-    private final Set<SolrCoreDescriptor> coreDescriptors;
 
     private final HealthAggregator healthAggregator;
 
     public SolrLibHealthIndicatorConfiguration(SolrCoreContainer solrCoreContainer,
-                                               Optional<Set<SolrCoreDescriptor>> coreDescriptors,
                                                HealthAggregator healthAggregator) {
         this.solrCoreContainer = solrCoreContainer;
-        this.coreDescriptors = coreDescriptors.orElseGet(Collections::emptySet);
         this.healthAggregator = healthAggregator;
     }
 
@@ -63,12 +59,7 @@ public class SolrLibHealthIndicatorConfiguration {
 
         healthIndicator.addHealthIndicator("coreContainer", new CoreContainerHealthIndicator(solrCoreContainer));
 
-        final CompositeHealthIndicator coreIndicator = new CompositeHealthIndicator(healthAggregator);
-        for (SolrCoreDescriptor descriptor : coreDescriptors) {
-            coreIndicator.addHealthIndicator(descriptor.getCoreName(),
-                    new CoreDescriptorHealthIndicator(solrCoreContainer, descriptor));
-        }
-        healthIndicator.addHealthIndicator("collections", coreIndicator);
+        healthIndicator.addHealthIndicator("collections", new CoresHealthIndicator(solrCoreContainer, healthAggregator));
 
         return healthIndicator;
     }
@@ -96,6 +87,30 @@ public class SolrLibHealthIndicatorConfiguration {
         }
     }
 
+    /**
+     * Reports the cores currently known to the container, including those added by
+     * {@link SolrCoreContainer#registerCore(SolrCoreDescriptor)} after startup.
+     */
+    public static class CoresHealthIndicator implements HealthIndicator {
+        private final SolrCoreContainer solrCoreContainer;
+        private final HealthAggregator healthAggregator;
+
+        public CoresHealthIndicator(SolrCoreContainer solrCoreContainer, HealthAggregator healthAggregator) {
+            this.solrCoreContainer = solrCoreContainer;
+            this.healthAggregator = healthAggregator;
+        }
+
+        @Override
+        public Health health() {
+            final Map<String, Health> healths = new LinkedHashMap<>();
+            for (SolrCoreDescriptor descriptor : solrCoreContainer.getCoreDescriptors()) {
+                healths.put(descriptor.getCoreName(),
+                        new CoreDescriptorHealthIndicator(solrCoreContainer, descriptor).health());
+            }
+            return healthAggregator.aggregate(healths);
+        }
+    }
+
     public static class CoreDescriptorHealthIndicator extends AbstractHealthIndicator {
         private final SolrCoreContainer solrCoreContainer;
         private final SolrCoreDescriptor coreDescriptor;
@@ -107,10 +122,19 @@ public class SolrLibHealthIndicatorConfiguration {
 
         @Override
         protected void doHealthCheck(Health.Builder builder) throws Exception {
+            final String coreName = coreDescriptor.getCoreName();
             if (solrCoreContainer == null) {
                 builder.unknown();
-            } else if (!solrCoreContainer.isStartupComplete()) {
+            } else if (solrCoreContainer.isCoreInitDeferred(coreName)) {
+                // requesting a client would load the core
+                builder.unknown()
+                        .withDetail("init", "deferred");
+            } else if (!solrCoreContainer.isCoreReady(coreName) && !solrCoreContainer.isStartupComplete()) {
                 builder.outOfService();
+            } else if (solrCoreContainer.isCoreReady(coreName) && !solrCoreContainer.isCoreResident(coreName)) {
+                // do not reload evicted transient cores
+                builder.up()
+                        .withDetail("resident", false);
             } else {
                 try (SolrClient solrClient = solrCoreContainer.getSolrClient(coreDescriptor)) {
                     final SolrPingResponse ping = solrClient.ping();
@@ -32,6 +32,13 @@ public class SolrLibProperties {
     private String collectionPrefix = "";
     private boolean deployCores = true;
     private boolean deleteOnShutdown = false;
+    private int deployParallelism = 1;
+    private int transientCacheSize = -1;
+    private int coreLoadThreads = -1;
+    private int shardHandlerCorePoolSize = -1;
+    private int shardHandlerMaxPoolSize = -1;
+    private boolean jmxMetricsEnabled = true;
+    private boolean inMemory = false;
 
     public Path getHome() {
         return home;
@@ -88,4 +95,60 @@ public class SolrLibProperties {
     public void setDeleteOnShutdown(boolean deleteOnShutdown) {
         this.deleteOnShutdown = deleteOnShutdown;
     }
+
+    public int getDeployParallelism() {
+        return deployParallelism;
+    }
+
+    public void setDeployParallelism(int deployParallelism) {
+        this.deployParallelism = deployParallelism;
+    }
+
+    public int getTransientCacheSize() {
+        return transientCacheSize;
+    }
+
+    public void setTransientCacheSize(int transientCacheSize) {
+        this.transientCacheSize = transientCacheSize;
+    }
+
+    public int getCoreLoadThreads() {
+        return coreLoadThreads;
+    }
+
+    public void setCoreLoadThreads(int coreLoadThreads) {
+        this.coreLoadThreads = coreLoadThreads;
+    }
+
+    public int getShardHandlerCorePoolSize() {
+        return shardHandlerCorePoolSize;
+    }
+
+    public void setShardHandlerCorePoolSize(int shardHandlerCorePoolSize) {
+        this.shardHandlerCorePoolSize = shardHandlerCorePoolSize;
+    }
+
+    public int getShardHandlerMaxPoolSize() {
+        return shardHandlerMaxPoolSize;
+    }
+
+    public void setShardHandlerMaxPoolSize(int shardHandlerMaxPoolSize) {
+        this.shardHandlerMaxPoolSize = shardHandlerMaxPoolSize;
+    }
+
+    public boolean isJmxMetricsEnabled() {
+        return jmxMetricsEnabled;
+    }
+
+    public void setJmxMetricsEnabled(boolean jmxMetricsEnabled) {
+        this.jmxMetricsEnabled = jmxMetricsEnabled;
+    }
+
+    public boolean isInMemory() {
+        return inMemory;
+    }
+
+    public void setInMemory(boolean inMemory) {
+        this.inMemory = inMemory;
+    }
 }
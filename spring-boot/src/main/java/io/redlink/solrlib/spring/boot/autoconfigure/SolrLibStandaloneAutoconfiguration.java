@@ -67,6 +67,7 @@ public class SolrLibStandaloneAutoconfiguration {
         config.setSolrHome(props.getHome());
         config.setPrefix(props.getCollectionPrefix());
         config.setDeployCores(props.isDeployCores());
+        config.setDeployParallelism(props.getDeployParallelism());
 
         return new SolrServerConnector(coreDescriptors, config);
     }
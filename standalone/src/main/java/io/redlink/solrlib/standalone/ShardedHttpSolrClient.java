@@ -0,0 +1,125 @@
+/*
+ * Copyright 2017 redlink GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.redlink.solrlib.standalone;
+
+import io.redlink.solrlib.ShardRouter;
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.impl.HttpSolrClient;
+import org.apache.solr.client.solrj.request.IsUpdateRequest;
+import org.apache.solr.client.solrj.request.QueryRequest;
+import org.apache.solr.client.solrj.request.UpdateRequest;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.common.params.ShardParams;
+import org.apache.solr.common.util.NamedList;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * SolrClient for a core with {@link io.redlink.solrlib.SolrCoreDescriptor#getNumShards() multiple shards} on a
+ * standalone Solr server, where each shard is a separate core.
+ * <ul>
+ *     <li>updates are routed to the shards by the {@link ShardRouter}</li>
+ *     <li>queries are sent to one of the shards (round-robin) with the {@code shards}-parameter listing all shards,
+ *          so Solr executes a distributed search and merges the results</li>
+ *     <li>all other requests (e.g. ping or the Config API) are sent to all shards, the response of the first
+ *          shard is returned.</li>
+ * </ul>
+ * Closing the client closes the clients of the shards, but not the shared
+ * {@link org.apache.http.client.HttpClient}.
+ */
+final class ShardedHttpSolrClient extends SolrClient {
+
+    private final List<HttpSolrClient> shards;
+    private final ShardRouter router;
+    private final String shardsParam;
+    private final AtomicInteger nextShard = new AtomicInteger();
+    private final String uniqueKey;
+
+    /**
+     * @param uniqueKey the uniqueKey of the schema, used to route the updates
+     */
+    ShardedHttpSolrClient(List<HttpSolrClient> shards, ShardRouter router, String uniqueKey) {
+        this.shards = shards;
+        this.router = router;
+        this.uniqueKey = uniqueKey;
+        shardsParam = shards.stream()
+                .map(HttpSolrClient::getBaseURL)
+                .collect(Collectors.joining(","));
+    }
+
+    @Override
+    public NamedList<Object> request(SolrRequest request, String collection) throws SolrServerException, IOException {
+        if (request instanceof UpdateRequest) {
+            return update((UpdateRequest) request);
+        } else if (request instanceof IsUpdateRequest) {
+            throw new SolrServerException("Unsupported update-request for sharded core: " + request.getClass().getSimpleName()
+                    + ", use UpdateRequest instead");
+        } else if (request instanceof QueryRequest) {
+            return query((QueryRequest) request);
+        } else {
+            NamedList<Object> response = null;
+            for (HttpSolrClient shard : shards) {
+                final NamedList<Object> shardResponse = shard.request(request);
+                if (response == null) {
+                    response = shardResponse;
+                }
+            }
+            return response;
+        }
+    }
+
+    private NamedList<Object> update(UpdateRequest request) throws SolrServerException, IOException {
+        final List<UpdateRequest> shardRequests = router.route(request, uniqueKey);
+        NamedList<Object> response = null;
+        for (int shard = 0; shard < shards.size(); shard++) {
+            final UpdateRequest shardRequest = shardRequests.get(shard);
+            if (shardRequest != null) {
+                final NamedList<Object> shardResponse = shards.get(shard).request(shardRequest);
+                if (response == null) {
+                    response = shardResponse;
+                }
+            }
+        }
+        return response != null ? response : new NamedList<>();
+    }
+
+    private NamedList<Object> query(QueryRequest request) throws SolrServerException, IOException {
+        final ModifiableSolrParams params = request.getParams() == null ? new ModifiableSolrParams()
+                : new ModifiableSolrParams(request.getParams());
+        if (params.get(ShardParams.SHARDS) == null) {
+            params.set(ShardParams.SHARDS, shardsParam);
+        }
+        final QueryRequest shardRequest = new QueryRequest(params, request.getMethod());
+        shardRequest.setPath(request.getPath());
+        shardRequest.setResponseParser(request.getResponseParser());
+        shardRequest.setBasicAuthCredentials(request.getBasicAuthUser(), request.getBasicAuthPassword());
+        // distribute the merging of results across the shards
+        final int shard = Math.floorMod(nextShard.getAndIncrement(), shards.size());
+        return shards.get(shard).request(shardRequest);
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (HttpSolrClient shard : shards) {
+            shard.close();
+        }
+    }
+}
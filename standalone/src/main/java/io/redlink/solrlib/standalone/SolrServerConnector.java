@@ -16,28 +16,45 @@
 package io.redlink.solrlib.standalone;
 
 import com.google.common.base.Preconditions;
+import io.redlink.solrlib.CoreBundleManifest;
+import io.redlink.solrlib.ShardRouter;
 import io.redlink.solrlib.SolrCoreContainer;
 import io.redlink.solrlib.SolrCoreDescriptor;
+import io.redlink.utils.PathUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.solr.client.solrj.SolrClient;
 import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.impl.HttpClientUtil;
 import org.apache.solr.client.solrj.impl.HttpSolrClient;
 import org.apache.solr.client.solrj.request.CoreAdminRequest;
+import org.apache.solr.client.solrj.request.schema.SchemaRequest;
 import org.apache.solr.client.solrj.response.CoreAdminResponse;
+import org.apache.solr.common.params.ModifiableSolrParams;
 import org.apache.solr.common.util.NamedList;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * SolrServerConnector, a implementation of {@link SolrCoreContainer} using a standalone Solr-Server as backend.
  * Direct access to {@code $SOLR_HOME} as well as access to the CoreAdminHandler is required.
+ * Cores with {@link SolrCoreDescriptor#getNumShards() multiple shards} are deployed as one Solr core per shard,
+ * see {@link #createSolrClient(String)}.
  */
 public class SolrServerConnector extends SolrCoreContainer {
 
@@ -45,6 +62,10 @@ public class SolrServerConnector extends SolrCoreContainer {
     private final String prefix;
     private final String solrBaseUrl;
     private final AtomicBoolean initialized;
+    private volatile CloseableHttpClient httpClient = null;
+    private final Map<String, ShardRouter> shardedCores = new ConcurrentHashMap<>();
+    /** the uniqueKey of the cores with multiple shards, resolved once per deployment */
+    private final Map<String, String> uniqueKeys = new ConcurrentHashMap<>();
 
     public SolrServerConnector(Set<SolrCoreDescriptor> coreDescriptors, SolrServerConnectorConfiguration configuration) {
         this(coreDescriptors, configuration, null);
@@ -64,72 +85,238 @@ public class SolrServerConnector extends SolrCoreContainer {
     protected void init(ExecutorService executorService) throws IOException, SolrServerException {
         Preconditions.checkState(initialized.compareAndSet(false, true));
         Preconditions.checkArgument(Objects.nonNull(solrBaseUrl));
+        httpClient = createHttpClient();
 
-        if (configuration.isDeployCores() && Objects.nonNull(configuration.getSolrHome())) {
+        if (isDeployCores()) {
             final Path solrHome = configuration.getSolrHome();
             Files.createDirectories(solrHome);
             final Path libDir = solrHome.resolve("lib");
             Files.createDirectories(libDir);
 
-            try (HttpSolrClient solrClient = new HttpSolrClient.Builder(solrBaseUrl).build()) {
-                for (SolrCoreDescriptor coreDescriptor : coreDescriptors) {
-                    final String coreName = coreDescriptor.getCoreName();
-                    if (availableCores.containsKey(coreName)) {
-                        log.warn("CoreName-Clash: {} already initialized. Skipping {}", coreName, coreDescriptor.getClass());
-                        continue;
-                    }
-                    final String remoteName = createRemoteName(coreName);
-
-                    final Path coreHome = solrHome.resolve(remoteName);
-                    coreDescriptor.initCoreDirectory(coreHome, libDir);
-
-                    final Path corePropertiesFile = coreHome.resolve("core.properties");
-                    // core.properties is created by the CreateCore-Command.
-                    Files.deleteIfExists(corePropertiesFile);
-
-                    if (coreDescriptor.getNumShards() > 1 || coreDescriptor.getReplicationFactor() > 1) {
-                        log.warn("Deploying {} to SolrServerConnector, ignoring config of shards={},replication={}", coreName,
-                                coreDescriptor.getNumShards(), coreDescriptor.getReplicationFactor());
-                    }
-
-                    // Create or reload the core
-                    if (CoreAdminRequest.getStatus(remoteName, solrClient).getStartTime(remoteName) == null) {
-                        final CoreAdminResponse adminResponse = CoreAdminRequest
-                                .createCore(remoteName, coreHome.toAbsolutePath().toString(), solrClient);
-                    } else {
-                        final CoreAdminResponse adminResponse = CoreAdminRequest
-                                .reloadCore(remoteName, solrClient);
-                    }
-                    // schedule client-side core init
-                    final boolean isNewCore = findInNamedList(CoreAdminRequest.getStatus(remoteName, solrClient).getCoreStatus(remoteName),
-                            "index", "lastModified") == null;
-                    scheduleCoreInit(executorService, coreDescriptor, isNewCore);
-
-                    availableCores.put(coreName, coreDescriptor);
+            try (HttpSolrClient solrClient = createHttpSolrClient(solrBaseUrl)) {
+                final CoreAdminResponse coreStatus = getCoreStatus(null, solrClient);
+                deployCores(coreDescriptors, configuration.getDeployParallelism(),
+                        coreDescriptor -> deployCore(coreDescriptor, solrClient, coreStatus, solrHome, libDir, executorService));
+            }
+        } else {
+            try (HttpSolrClient solrClient = createHttpSolrClient(solrBaseUrl)) {
+                final CoreAdminResponse coreStatus = getCoreStatus(null, solrClient);
+                deployCores(coreDescriptors, configuration.getDeployParallelism(),
+                        coreDescriptor -> checkCore(coreDescriptor, solrClient, coreStatus, executorService));
+            }
+        }
+    }
+
+    /**
+     * Deploy the core to the Solr server.
+     * @param coreStatus snapshot of the status of the cores in the Solr server, see {@link #getCoreStatus(String, SolrClient)}
+     */
+    private void deployCore(SolrCoreDescriptor coreDescriptor, SolrClient solrClient, CoreAdminResponse coreStatus,
+                            Path solrHome, Path libDir, ExecutorService executorService) throws IOException, SolrServerException {
+        final String coreName = coreDescriptor.getCoreName();
+        updateShards(coreDescriptor);
+        if (coreDescriptor.getReplicationFactor() > 1) {
+            log.warn("Deploying {} to SolrServerConnector, ignoring config of replication={}", coreName,
+                    coreDescriptor.getReplicationFactor());
+        }
+
+        boolean isNewCore = true;
+        for (String remoteName : getRemoteNames(coreName)) {
+            isNewCore &= deployCore(coreDescriptor, remoteName, solrClient, coreStatus, solrHome, libDir);
+        }
+        updateUniqueKey(coreName, solrClient);
+        // schedule client-side core init
+        scheduleCoreInit(executorService, coreDescriptor, isNewCore);
+    }
+
+    /**
+     * Deploy a single Solr core, i.e. the core itself or one of its shards.
+     * @return {@code true} if the index of the core was never updated
+     */
+    private boolean deployCore(SolrCoreDescriptor coreDescriptor, String remoteName, SolrClient solrClient,
+                               CoreAdminResponse coreStatus, Path solrHome, Path libDir) throws IOException, SolrServerException {
+        final String coreName = coreDescriptor.getCoreName();
+        final Path coreHome = solrHome.resolve(remoteName);
+        final CoreBundleManifest previous = CoreBundleManifest.read(coreHome);
+        coreDescriptor.initCoreDirectory(coreHome, libDir);
+        final CoreBundleManifest current = CoreBundleManifest.read(coreHome);
+        final boolean unchanged = !previous.isEmpty() && !current.isEmpty() && previous.isSameDeployment(current);
+        if (!unchanged) {
+            // the manifest is only kept once the core was created or reloaded successfully,
+            // otherwise the next deployment would consider the core unchanged and skip the reload
+            CoreBundleManifest.delete(coreHome);
+        }
+
+        final Path corePropertiesFile = coreHome.resolve("core.properties");
+        // core.properties is created by the CreateCore-Command.
+        Files.deleteIfExists(corePropertiesFile);
+
+        // Create or reload the core
+        final NamedList<Object> status;
+        if (!coreExists(coreStatus, remoteName)) {
+            installIndexTemplate(coreDescriptor, coreHome);
+            CoreAdminRequest.createCore(remoteName, coreHome.toAbsolutePath().toString(), solrClient);
+            // the core might have picked up an existing index, so refresh its status
+            status = getCoreStatus(remoteName, solrClient).getCoreStatus(remoteName);
+        } else if (unchanged) {
+            log.debug("Core {} (remote: {}) is unchanged, skipping reload", coreName, remoteName);
+            status = coreStatus.getCoreStatus(remoteName);
+        } else {
+            // a reload does not modify the index, so the status from the snapshot is still valid
+            CoreAdminRequest.reloadCore(remoteName, solrClient);
+            status = coreStatus.getCoreStatus(remoteName);
+        }
+        if (!unchanged) {
+            current.write(coreHome);
+        }
+        return status == null || findInNamedList(status, "index", "lastModified") == null;
+    }
+
+    /**
+     * Install the {@link SolrCoreDescriptor#visitIndexTemplate(SolrCoreDescriptor.IndexTemplateVisitor) index-template}
+     * (e.g. the {@code data/index} of the core-bundle) into a core-directory without index. The {@code data}-directory
+     * is not deployed with the core-bundle, see {@link CoreBundleManifest#sync(Path, Path)}.
+     */
+    private void installIndexTemplate(SolrCoreDescriptor coreDescriptor, Path coreHome) throws IOException {
+        final Path indexDir = coreHome.resolve("data").resolve("index");
+        if (Files.isDirectory(indexDir)) {
+            try (Stream<Path> files = Files.list(indexDir)) {
+                if (files.anyMatch(file -> String.valueOf(file.getFileName()).startsWith("segments"))) {
+                    log.debug("Core-directory {} already contains an index", coreHome);
+                    return;
                 }
             }
+        }
+        if (coreDescriptor.getNumShards() > 1) {
+            if (coreDescriptor.visitIndexTemplate(templateDir -> {})) {
+                // the documents of a template are not distributed across the shards
+                log.warn("Ignoring index-template of {}: not supported for multiple shards", coreDescriptor.getCoreName());
+            }
+            return;
+        }
+        if (coreDescriptor.visitIndexTemplate(templateDir -> PathUtils.copyRecursive(templateDir, indexDir))) {
+            log.info("Installed index-template for core {} into {}", coreDescriptor.getCoreName(), indexDir);
+        }
+    }
+
+    private void checkCore(SolrCoreDescriptor coreDescriptor, SolrClient solrClient, CoreAdminResponse coreStatus,
+                           ExecutorService executorService) throws IOException, SolrServerException {
+        final String coreName = coreDescriptor.getCoreName();
+        updateShards(coreDescriptor);
+        final List<String> missing = getRemoteNames(coreName).stream()
+                .filter(remoteName -> !coreExists(coreStatus, remoteName))
+                .collect(Collectors.toList());
+        if (!missing.isEmpty()) {
+            // Core does not exists
+            log.warn("Collection {} (remote: {}) not available in Solr '{}' " +
+                            "but deployCores is set to false",
+                    coreName, StringUtils.join(missing, ','), solrBaseUrl);
+        } else {
+            log.debug("Collection {} exists in Solr '{}' as {}", coreName, solrBaseUrl, getRemoteNames(coreName));
+            updateUniqueKey(coreName, solrClient);
+            scheduleCoreInit(executorService, coreDescriptor, false);
+        }
+    }
+
+    private void updateShards(SolrCoreDescriptor coreDescriptor) {
+        if (coreDescriptor.getNumShards() > 1) {
+            shardedCores.put(coreDescriptor.getCoreName(), new ShardRouter(coreDescriptor.getNumShards()));
         } else {
-            try (HttpSolrClient solrClient = new HttpSolrClient.Builder(solrBaseUrl).build()) {
-                for (SolrCoreDescriptor coreDescriptor : coreDescriptors) {
-                    final String coreName = coreDescriptor.getCoreName();
-                    if (availableCores.containsKey(coreName)) {
-                        log.warn("CoreName-Clash: {} already initialized. Skipping {}", coreName, coreDescriptor.getClass());
-                        continue;
-                    }
-                    final String remoteName = createRemoteName(coreName);
-                    if (CoreAdminRequest.getStatus(remoteName, solrClient).getStartTime(remoteName) == null) {
-                        // Core does not exists
-                        log.warn("Collection {} (remote: {}) not available in Solr '{}' " +
-                                        "but deployCores is set to false",
-                                coreName, remoteName, solrBaseUrl);
-                    } else {
-                        log.debug("Collection {} exists in Solr '{}' as {}", coreName, solrBaseUrl, remoteName);
-                        scheduleCoreInit(executorService, coreDescriptor, false);
-                        availableCores.put(coreName, coreDescriptor);
-                    }
+            shardedCores.remove(coreDescriptor.getCoreName());
+        }
+    }
+
+    /**
+     * Read the uniqueKey of a core with multiple shards from the schema of its first shard, it is required to route
+     * the updates of every {@link ShardedHttpSolrClient} of the core.
+     */
+    private void updateUniqueKey(String coreName, SolrClient solrClient) throws IOException, SolrServerException {
+        if (!shardedCores.containsKey(coreName)) {
+            uniqueKeys.remove(coreName);
+            return;
+        }
+        final String remoteName = getRemoteNames(coreName).get(0);
+        final String uniqueKey = new SchemaRequest.UniqueKey().process(solrClient, remoteName).getUniqueKey();
+        if (StringUtils.isBlank(uniqueKey)) {
+            throw new SolrServerException("Core " + remoteName + " has no uniqueKey, required for sharding");
+        }
+        uniqueKeys.put(coreName, uniqueKey);
+    }
+
+    /**
+     * @return the names of the Solr cores holding the provided core: the core itself or its shards
+     */
+    private List<String> getRemoteNames(String coreName) {
+        final ShardRouter router = shardedCores.get(coreName);
+        if (router == null) {
+            return Collections.singletonList(createRemoteName(coreName));
+        }
+        return router.getShardNames(coreName).stream()
+                .map(this::createRemoteName)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    protected void doRegisterCore(SolrCoreDescriptor coreDescriptor, ExecutorService executorService) throws IOException, SolrServerException {
+        Preconditions.checkState(initialized.get(), "SolrServerConnector not initialized!");
+        try (HttpSolrClient solrClient = createHttpSolrClient(solrBaseUrl)) {
+            // the status of all cores is required for a core with multiple shards
+            final CoreAdminResponse coreStatus = getCoreStatus(coreDescriptor.getNumShards() > 1 ? null
+                    : createRemoteName(coreDescriptor.getCoreName()), solrClient);
+            if (isDeployCores()) {
+                final Path solrHome = configuration.getSolrHome();
+                deployCore(coreDescriptor, solrClient, coreStatus, solrHome, solrHome.resolve("lib"), executorService);
+            } else {
+                checkCore(coreDescriptor, solrClient, coreStatus, executorService);
+            }
+        }
+    }
+
+    /**
+     * Unload the core from the Solr server and delete its instance-directory (including the index).
+     * Cores that were not deployed by this connector ({@code deployCores=false}) are kept in Solr.
+     */
+    @Override
+    protected void doUnregisterCore(String coreName) throws IOException, SolrServerException {
+        Preconditions.checkState(initialized.get(), "SolrServerConnector not initialized!");
+        final List<String> remoteNames = getRemoteNames(coreName);
+        if (isDeployCores()) {
+            try (HttpSolrClient solrClient = createHttpSolrClient(solrBaseUrl)) {
+                for (String remoteName : remoteNames) {
+                    final CoreAdminRequest.Unload unload = new CoreAdminRequest.Unload(true);
+                    unload.setCoreName(remoteName);
+                    unload.setDeleteDataDir(true);
+                    unload.setDeleteInstanceDir(true);
+                    unload.process(solrClient);
+                    log.debug("Unloaded core {} (remote: {}) from Solr '{}'", coreName, remoteName, solrBaseUrl);
                 }
             }
+        } else {
+            log.info("Core {} (remote: {}) not deployed by {}, keeping it in Solr '{}'", coreName, remoteNames,
+                    getClass().getSimpleName(), solrBaseUrl);
         }
+        shardedCores.remove(coreName);
+        uniqueKeys.remove(coreName);
+    }
+
+    private boolean isDeployCores() {
+        return configuration.isDeployCores() && Objects.nonNull(configuration.getSolrHome());
+    }
+
+    /**
+     * Retrieve the status (including index-information) of the provided core, or of all cores in the Solr server
+     * with a single request.
+     * @param remoteName the remote core-name, or {@code null} to retrieve the status of all cores
+     */
+    private CoreAdminResponse getCoreStatus(String remoteName, SolrClient solrClient) throws IOException, SolrServerException {
+        final CoreAdminResponse coreStatus = CoreAdminRequest.getStatus(remoteName, solrClient);
+        log.trace("CoreAdmin STATUS {}: {}", StringUtils.defaultString(remoteName, "(all cores)"), coreStatus);
+        return coreStatus;
+    }
+
+    private boolean coreExists(CoreAdminResponse coreStatus, String remoteName) {
+        final NamedList<Object> status = coreStatus.getCoreStatus(remoteName);
+        return status != null && status.get("startTime") != null;
     }
 
     private Object findInNamedList(NamedList namedList, String... path) {
@@ -146,10 +333,58 @@ public class SolrServerConnector extends SolrCoreContainer {
         return prefix + coreName;
     }
 
+    /**
+     * Create the {@link org.apache.http.client.HttpClient} shared by all {@link SolrClient}s of this connector.
+     */
+    protected CloseableHttpClient createHttpClient() {
+        final PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(
+                HttpClientUtil.getSchemaRegisteryProvider().getSchemaRegistry(), null, null, null,
+                configuration.getConnectionTtl(), TimeUnit.MILLISECONDS);
+
+        final ModifiableSolrParams params = new ModifiableSolrParams();
+        params.set(HttpClientUtil.PROP_MAX_CONNECTIONS, configuration.getMaxConnections());
+        params.set(HttpClientUtil.PROP_MAX_CONNECTIONS_PER_HOST, configuration.getMaxConnectionsPerHost());
+        params.set(HttpClientUtil.PROP_CONNECTION_TIMEOUT, configuration.getConnectionTimeout());
+        params.set(HttpClientUtil.PROP_SO_TIMEOUT, configuration.getSocketTimeout());
+        return HttpClientUtil.createClient(params, connectionManager);
+    }
+
+    private HttpSolrClient createHttpSolrClient(String baseUrl) {
+        Preconditions.checkState(Objects.nonNull(httpClient), "SolrServerConnector not initialized!");
+        return new HttpSolrClient.Builder(baseUrl)
+                .withHttpClient(httpClient)
+                .withConnectionTimeout(configuration.getConnectionTimeout())
+                .withSocketTimeout(configuration.getSocketTimeout())
+                .build();
+    }
 
+    @Override
+    public void shutdown() throws IOException {
+        super.shutdown();
+        final CloseableHttpClient client = httpClient;
+        httpClient = null;
+        if (client != null) {
+            HttpClientUtil.close(client);
+        }
+    }
+
+    /**
+     * Create a SolrClient for the provided core. All clients share the pooled
+     * {@link org.apache.http.client.HttpClient} of this connector, closing the returned client
+     * will not release the connection pool.
+     * For a core with multiple shards, the client routes updates to the shards and executes distributed queries,
+     * see {@link ShardedHttpSolrClient}.
+     */
     @Override
     protected SolrClient createSolrClient(String coreName) {
-        return new HttpSolrClient.Builder(solrBaseUrl + StringUtils.prependIfMissing(createRemoteName(coreName), "/"))
-                .build();
+        final ShardRouter router = shardedCores.get(coreName);
+        if (router == null) {
+            return createHttpSolrClient(solrBaseUrl + StringUtils.prependIfMissing(createRemoteName(coreName), "/"));
+        }
+        final String uniqueKey = uniqueKeys.get(coreName);
+        Preconditions.checkState(Objects.nonNull(uniqueKey), "uniqueKey of core %s not resolved", coreName);
+        return new ShardedHttpSolrClient(getRemoteNames(coreName).stream()
+                .map(remoteName -> createHttpSolrClient(solrBaseUrl + StringUtils.prependIfMissing(remoteName, "/")))
+                .collect(Collectors.toList()), router, uniqueKey);
     }
 }
@@ -25,6 +25,19 @@ public class SolrServerConnectorConfiguration {
     private String solrUrl;
     private Path solrHome;
     private boolean deployCores = true;
+    /** max. number of cores to deploy concurrently during init */
+    private int deployParallelism = 1;
+
+    /** max. number of pooled connections to the Solr-Server */
+    private int maxConnections = 100;
+    /** max. number of pooled connections per route (host) */
+    private int maxConnectionsPerHost = 100;
+    /** time-to-live of pooled connections in milliseconds, {@code <= 0} for unlimited */
+    private long connectionTtl = 60000;
+    /** connect timeout in milliseconds */
+    private int connectionTimeout = 60000;
+    /** socket (read) timeout in milliseconds */
+    private int socketTimeout = 600000;
 
     public String getPrefix() {
         return prefix;
@@ -57,4 +70,52 @@ public class SolrServerConnectorConfiguration {
     public void setDeployCores(boolean deployCores) {
         this.deployCores = deployCores;
     }
+
+    public int getDeployParallelism() {
+        return deployParallelism;
+    }
+
+    public void setDeployParallelism(int deployParallelism) {
+        this.deployParallelism = deployParallelism;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    public int getMaxConnectionsPerHost() {
+        return maxConnectionsPerHost;
+    }
+
+    public void setMaxConnectionsPerHost(int maxConnectionsPerHost) {
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+    }
+
+    public long getConnectionTtl() {
+        return connectionTtl;
+    }
+
+    public void setConnectionTtl(long connectionTtl) {
+        this.connectionTtl = connectionTtl;
+    }
+
+    public int getConnectionTimeout() {
+        return connectionTimeout;
+    }
+
+    public void setConnectionTimeout(int connectionTimeout) {
+        this.connectionTimeout = connectionTimeout;
+    }
+
+    public int getSocketTimeout() {
+        return socketTimeout;
+    }
+
+    public void setSocketTimeout(int socketTimeout) {
+        this.socketTimeout = socketTimeout;
+    }
 }
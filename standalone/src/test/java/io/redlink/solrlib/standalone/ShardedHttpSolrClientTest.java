@@ -0,0 +1,88 @@
+/*
+ * Copyright 2017 redlink GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.redlink.solrlib.standalone;
+
+import io.redlink.solrlib.ShardRouter;
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.impl.HttpSolrClient;
+import org.apache.solr.client.solrj.request.QueryRequest;
+import org.apache.solr.client.solrj.request.UpdateRequest;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.util.SimpleOrderedMap;
+import org.hamcrest.Matchers;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ */
+public class ShardedHttpSolrClientTest {
+
+    @Test
+    public void testQuery() throws Exception {
+        final HttpSolrClient shard1 = mockShard("http://localhost:8983/solr/foo_shard1");
+        final HttpSolrClient shard2 = mockShard("http://localhost:8983/solr/foo_shard2");
+        final ShardedHttpSolrClient solrClient = new ShardedHttpSolrClient(Arrays.asList(shard1, shard2), new ShardRouter(2), "id");
+
+        solrClient.query(new SolrQuery("*:*"));
+        solrClient.query(new SolrQuery("*:*"));
+
+        final ArgumentCaptor<SolrRequest> request = ArgumentCaptor.forClass(SolrRequest.class);
+        Mockito.verify(shard1).request(request.capture(), Mockito.isNull(String.class));
+        Assert.assertThat(request.getValue(), Matchers.instanceOf(QueryRequest.class));
+        Assert.assertThat(request.getValue().getParams().get("shards"),
+                Matchers.is("http://localhost:8983/solr/foo_shard1,http://localhost:8983/solr/foo_shard2"));
+        Assert.assertThat(request.getValue().getParams().get("q"), Matchers.is("*:*"));
+        // round-robin
+        Mockito.verify(shard2).request(Mockito.any(QueryRequest.class), Mockito.isNull(String.class));
+    }
+
+    @Test
+    public void testUpdate() throws Exception {
+        final HttpSolrClient shard1 = mockShard("http://localhost:8983/solr/foo_shard1");
+        final HttpSolrClient shard2 = mockShard("http://localhost:8983/solr/foo_shard2");
+        final ShardRouter router = new ShardRouter(2);
+        final ShardedHttpSolrClient solrClient = new ShardedHttpSolrClient(Arrays.asList(shard1, shard2), router, "id");
+
+        final SolrInputDocument doc = new SolrInputDocument();
+        doc.addField("id", "foo");
+        solrClient.add(doc);
+
+        final HttpSolrClient target = router.getShard("foo") == 0 ? shard1 : shard2;
+        final ArgumentCaptor<SolrRequest> request = ArgumentCaptor.forClass(SolrRequest.class);
+        // the unique key is provided by the connector, the schema is not requested
+        Mockito.verify(target).request(request.capture(), Mockito.isNull(String.class));
+        Assert.assertThat(((UpdateRequest) request.getValue()).getDocuments(), Matchers.is(Collections.singletonList(doc)));
+        Mockito.verify(target == shard1 ? shard2 : shard1, Mockito.never()).request(Mockito.any(UpdateRequest.class), Mockito.nullable(String.class));
+
+        solrClient.close();
+        Mockito.verify(shard1).close();
+        Mockito.verify(shard2).close();
+    }
+
+    private static HttpSolrClient mockShard(String baseUrl) throws Exception {
+        final HttpSolrClient shard = Mockito.mock(HttpSolrClient.class);
+        Mockito.when(shard.getBaseURL()).thenReturn(baseUrl);
+        Mockito.when(shard.request(Mockito.any(), Mockito.isNull(String.class))).thenReturn(new SimpleOrderedMap<>());
+        return shard;
+    }
+}
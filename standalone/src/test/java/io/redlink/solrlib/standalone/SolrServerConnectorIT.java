@@ -19,7 +19,10 @@ package io.redlink.solrlib.standalone;
 import io.redlink.solrlib.SimpleCoreDescriptor;
 import io.redlink.solrlib.SolrCoreDescriptor;
 import io.redlink.solrlib.standalone.test.StandaloneSolrServer;
+import io.redlink.utils.ResourceLoaderUtils;
 import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.impl.HttpSolrClient;
 import org.apache.solr.common.SolrInputDocument;
 import org.hamcrest.Matchers;
 import org.junit.ClassRule;
@@ -80,6 +83,29 @@ public class SolrServerConnectorIT {
 
     }
 
+    @Test
+    public void testShards() throws Exception {
+        final SolrCoreDescriptor sharded = new SimpleCoreDescriptor("sharded", ResourceLoaderUtils.getResourceAsPath("/basic.zip", this.getClass()))
+                .setNumShards(2);
+
+        final SolrServerConnector ssc = new SolrServerConnector(Collections.singleton(sharded), configuration);
+        ssc.initialize();
+        try (SolrClient solrClient = ssc.getSolrClient(sharded)) {
+            for (int i = 0; i < 10; i++) {
+                solrClient.add(createSolrDoc("id" + i, "title" + i));
+            }
+            solrClient.commit();
+
+            assertThat(solrClient.query(new SolrQuery("*:*")).getResults().getNumFound(), Matchers.equalTo(10L));
+            try (SolrClient shard1 = new HttpSolrClient.Builder(solrServer.getBaseUrl() + "/sharded_shard1").build()) {
+                assertThat("documents are distributed", shard1.query(new SolrQuery("*:*")).getResults().getNumFound(),
+                        Matchers.lessThan(10L));
+            }
+        } finally {
+            ssc.shutdown();
+        }
+    }
+
     private SolrInputDocument createSolrDoc(String id, String... fields) {
         final SolrInputDocument inputDocument = new SolrInputDocument();
         inputDocument.setField("id", id);
@@ -45,4 +45,19 @@ public class SolrServerConnectorTest {
             Assert.assertThat(solrServerConnector2.createRemoteName(coreName), Matchers.is(prefix + coreName));
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testCreateSolrClientRequiresInit() throws Exception {
+        SolrServerConnectorConfiguration config = new SolrServerConnectorConfiguration();
+        config.setSolrUrl("http://localhost:8983/solr");
+        SolrServerConnector solrServerConnector = new SolrServerConnector(Collections.emptySet(), config);
+        try {
+            solrServerConnector.createSolrClient("core1");
+            Assert.fail("must not create solr-client for non-initialized connector");
+        } catch (IllegalStateException e) {
+            Assert.assertThat(e.getMessage(), Matchers.is("SolrServerConnector not initialized!"));
+        }
+        // shutdown without init must not fail
+        solrServerConnector.shutdown();
+    }
+}